@@ -4,6 +4,7 @@ plugins {
     java
     application
     id("net.ltgt.errorprone") version "0.8.1"
+    id("me.champeau.gradle.jmh") version "0.5.0"
 }
 
 java {
@@ -45,6 +46,16 @@ tasks {
     }
 }
 
+// Benchmarks in src/jmh, run with ./gradlew jmh, e.g. -Pjmh.includes=ReadBenchmark
+jmh {
+    jmhVersion = "1.23"
+    jvmArgs = listOf("-Xmx128m")
+    include = listOf(project.findProperty("jmh.includes")?.toString() ?: ".*")
+    resultFormat = "JSON"
+    resultsFile = file("$buildDir/reports/jmh/results.json")
+    humanOutputFile = file("$buildDir/reports/jmh/human.txt")
+}
+
 application {
     // Define the main class for the application
     mainClassName = "ru.mail.polis.Client"
@@ -53,14 +64,24 @@ application {
     applicationDefaultJvmArgs = listOf("-Xmx128m")
 }
 
-// Fail on warnings
+// Fail on warnings, except for the code generated by JMH
 tasks.withType<JavaCompile> {
-    val compilerArgs = options.compilerArgs
-    compilerArgs.add("-Werror")
-    compilerArgs.add("-Xlint:all")
+    if (name != "jmhCompileGeneratedClasses") {
+        val compilerArgs = options.compilerArgs
+        compilerArgs.add("-Werror")
+        compilerArgs.add("-Xlint:all")
+    }
 }
 
 // Error prone options
 tasks.named<JavaCompile>("compileTestJava") {
     options.errorprone.isEnabled.set(false)
+}
+
+tasks.named<JavaCompile>("compileJmhJava") {
+    options.errorprone.isEnabled.set(false)
+}
+
+tasks.named<JavaCompile>("jmhCompileGeneratedClasses") {
+    options.errorprone.isEnabled.set(false)
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package ru.mail.polis.suhova;
+
+import ru.mail.polis.DAO;
+import ru.mail.polis.Record;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+/**
+ * Keys, values and prepared storages for the benchmarks.
+ * Stored keys have even indexes, so an odd index is a key that is surely missing.
+ */
+final class Dataset {
+    /**
+     * Flush threshold of the storages the read and write benchmarks open,
+     * and the memtable size the maintenance benchmark flushes.
+     */
+    static final long MEMTABLE_SIZE = 4 * 1024 * 1024;
+    private static final long SEED = 42;
+
+    private Dataset() {
+        // Not instantiatable
+    }
+
+    /**
+     * Key of the index: the index in its last bytes, so keys go in the order of indexes.
+     */
+    static ByteBuffer key(final long index, final int size) {
+        final ByteBuffer key = ByteBuffer.allocate(Math.max(size, Long.BYTES));
+        key.putLong(key.capacity() - Long.BYTES, index);
+        return key;
+    }
+
+    static ByteBuffer value(final Random random, final int size) {
+        final byte[] value = new byte[size];
+        random.nextBytes(value);
+        return ByteBuffer.wrap(value);
+    }
+
+    /**
+     * Writes the records into the storage as the number of generations, exactly one table each:
+     * every generation gets every generations-th record, so all of them span the whole key space.
+     * A generation is bulk loaded, so it is sorted in runs of {@link #MEMTABLE_SIZE} whatever its size
+     * and merged into a single table.
+     *
+     * @param dir         - directory of the storage
+     * @param records     - number of the records
+     * @param generations - number of the generations
+     * @param keySize     - size of a key
+     * @param valueSize   - size of a value
+     */
+    static void fill(
+            final File dir,
+            final long records,
+            final int generations,
+            final int keySize,
+            final int valueSize) throws IOException {
+        final Random random = new Random(SEED);
+        final Config config = new Config(MEMTABLE_SIZE).setTableSize(Long.MAX_VALUE);
+        for (int generation = 0; generation < generations; generation++) {
+            try (DAO dao = new TurboDAO(dir, config)) {
+                dao.bulkLoad(LongStream.iterate(generation, i -> i < records, i -> i + generations)
+                        .mapToObj(i -> Record.of(key(2 * i, keySize), value(random, valueSize)))
+                        .iterator());
+            }
+        }
+    }
+
+    /**
+     * Settings of a storage that flushes only on close and writes the whole memtable into one table.
+     */
+    static Config unbounded() {
+        return new Config(Long.MAX_VALUE).setTableSize(Long.MAX_VALUE);
+    }
+
+    static File createDirectory() throws IOException {
+        return Files.createTempDirectory("dao-bench").toFile();
+    }
+
+    static void deleteDirectory(final File dir) throws IOException {
+        Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package ru.mail.polis.suhova;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flush of a full memtable and compaction of several generations, each measured once per prepared storage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MaintenanceBenchmark {
+    @Param("100000")
+    public long records;
+
+    @Param({"16", "64"})
+    public int keySize;
+
+    @Param({"100", "1000"})
+    public int valueSize;
+
+    @Param({"1", "8"})
+    public int generations;
+
+    private File dir;
+    private TurboDAO dao;
+
+    /**
+     * Storage of the generations and a memtable of {@link Dataset#MEMTABLE_SIZE} that is never flushed on its own.
+     */
+    @Setup(Level.Invocation)
+    public void setUp() throws IOException {
+        dir = Dataset.createDirectory();
+        Dataset.fill(dir, records, generations, keySize, valueSize);
+        dao = new TurboDAO(dir, Dataset.unbounded());
+        final Random random = new Random();
+        final long count = Dataset.MEMTABLE_SIZE / (keySize + valueSize);
+        for (long i = 0; i < count; i++) {
+            dao.upsert(Dataset.key(2 * i + 1, keySize), Dataset.value(random, valueSize));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws IOException {
+        dao.close();
+        Dataset.deleteDirectory(dir);
+    }
+
+    /**
+     * Writes the memtable into one table, the storage stays open for the tear down to close.
+     */
+    @Benchmark
+    public void flush() throws IOException {
+        dao.flush();
+    }
+
+    @Benchmark
+    public void compact() throws IOException {
+        dao.compact();
+    }
+}
@@ -0,0 +1,99 @@
+package ru.mail.polis.suhova;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.mail.polis.DAO;
+import ru.mail.polis.Distribution;
+import ru.mail.polis.Record;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point and range reads over a storage of several generations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReadBenchmark {
+    private static final int RANGE_LENGTH = 100;
+
+    @Param("100000")
+    public long records;
+
+    @Param({"16", "64"})
+    public int keySize;
+
+    @Param({"100", "1000"})
+    public int valueSize;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    public Distribution distribution;
+
+    @Param({"1", "8"})
+    public int generations;
+
+    @Param({"1.0", "0.5"})
+    public double hitRatio;
+
+    private File dir;
+    private DAO dao;
+    private Distribution.IndexGenerator generator;
+    private final Random random = new Random();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Dataset.createDirectory();
+        Dataset.fill(dir, records, generations, keySize, valueSize);
+        dao = new TurboDAO(dir, Dataset.MEMTABLE_SIZE);
+        generator = distribution.generator(records);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dao.close();
+        Dataset.deleteDirectory(dir);
+    }
+
+    private ByteBuffer nextKey() {
+        final long index = 2 * generator.next(random, records);
+        return Dataset.key(random.nextDouble() < hitRatio ? index : index + 1, keySize);
+    }
+
+    @Benchmark
+    public void get(final Blackhole blackhole) throws IOException {
+        try {
+            blackhole.consume(dao.get(nextKey()));
+        } catch (NoSuchElementException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void range(final Blackhole blackhole) throws IOException {
+        final Iterator<Record> range = dao.iterator(nextKey());
+        for (int i = 0; i < RANGE_LENGTH && range.hasNext(); i++) {
+            blackhole.consume(range.next());
+        }
+    }
+}
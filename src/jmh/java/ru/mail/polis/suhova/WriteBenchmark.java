@@ -0,0 +1,71 @@
+package ru.mail.polis.suhova;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.mail.polis.DAO;
+import ru.mail.polis.Distribution;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upserts into a storage, the flushes they cause included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WriteBenchmark {
+    @Param("1000000")
+    public long keys;
+
+    @Param({"16", "64"})
+    public int keySize;
+
+    @Param({"100", "1000"})
+    public int valueSize;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    public Distribution distribution;
+
+    private File dir;
+    private DAO dao;
+    private Distribution.IndexGenerator generator;
+    private ByteBuffer value;
+    private final Random random = new Random();
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        dir = Dataset.createDirectory();
+        dao = new TurboDAO(dir, Dataset.MEMTABLE_SIZE);
+        generator = distribution.generator(keys);
+        value = Dataset.value(random, valueSize);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        dao.close();
+        Dataset.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public void upsert() throws IOException {
+        dao.upsert(Dataset.key(generator.next(random, keys), keySize), value.duplicate());
+    }
+}
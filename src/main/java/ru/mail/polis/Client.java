@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -38,6 +39,7 @@ import java.util.NoSuchElementException;
 public final class Client {
     private static final Logger log = LoggerFactory.getLogger(Client.class);
     private static final String DATA = "data";
+    private static final String LOAD = "load";
 
     private Client() {
         // Not instantiable
@@ -57,6 +59,7 @@ public final class Client {
 
     /**
      * Provides console to temporary DB.
+     * With "load" as the first argument, runs a {@link LoadGenerator} with the rest of the arguments instead.
      */
     public static void main(final String[] args) throws IOException {
         final File data = new File(DATA);
@@ -69,6 +72,16 @@ public final class Client {
 
         log.info("Storing data in {}", data.getAbsolutePath());
         final DAO dao = DAOFactory.create(data);
+        if (args.length > 0 && LOAD.equals(args[0])) {
+            try {
+                LoadGenerator.parse(Arrays.copyOfRange(args, 1, args.length)).run(dao);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                dao.close();
+            }
+            return;
+        }
         final String pkg = dao.getClass().getPackage().toString();
         log.info(
                 "Welcome to " + pkg.substring(pkg.lastIndexOf('.') + 1) + " Key-Value DAO!"
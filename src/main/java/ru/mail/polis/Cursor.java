@@ -0,0 +1,34 @@
+package ru.mail.polis;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+
+/**
+ * Long-lived position in a storage, which can be moved to any key.
+ * A new cursor is positioned at the first key.
+ * Seeking to keys in ascending order is cheaper than getting a new iterator for every key.
+ */
+public interface Cursor extends Closeable {
+
+    /**
+     * Moves the cursor to the first {@link Record} with key greater than or equal to the given one.
+     */
+    void seek(@NotNull ByteBuffer key) throws IOException;
+
+    /**
+     * Whether there is a {@link Record} at the position of the cursor.
+     */
+    boolean hasNext();
+
+    /**
+     * Provides the {@link Record} at the position of the cursor and moves the cursor to the next one.
+     *
+     * @throws NoSuchElementException if no such record
+     */
+    @NotNull
+    Record next();
+}
@@ -22,8 +22,20 @@ import org.jetbrains.annotations.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Storage interface.
@@ -64,6 +76,101 @@ public interface DAO extends Closeable {
         return Iters.until(iterator(from), bound);
     }
 
+    /**
+     * Provides iterator (possibly empty) over {@link Record}s starting at "from" key (inclusive)
+     * until given "to" key (exclusive, or the last key if it is null) in <b>descending</b> order
+     * according to {@link Record#compareTo(Record)}, i.e. from the largest key of the range.
+     * The default implementation collects the whole range first.
+     */
+    @NotNull
+    default Iterator<Record> descendingRange(
+            @NotNull ByteBuffer from,
+            @Nullable ByteBuffer to) throws IOException {
+        final Deque<Record> records = new ArrayDeque<>();
+        range(from, to).forEachRemaining(records::push);
+        return records.iterator();
+    }
+
+    /**
+     * Provides stream (possibly empty) over {@link Record}s starting at "from" key (inclusive)
+     * until given "to" key (exclusive, or the last key if it is null) in <b>ascending</b> order
+     * according to {@link Record#compareTo(Record)}.
+     * The stream is sequential, {@link Stream#parallel()} makes it process disjoint subranges in parallel
+     * as far as the implementation can split the range. The default implementation can't split it.
+     * The storage should not be modified until the stream is consumed.
+     */
+    @NotNull
+    default Stream<Record> stream(
+            @NotNull ByteBuffer from,
+            @Nullable ByteBuffer to) throws IOException {
+        final int characteristics = Spliterator.ORDERED | Spliterator.SORTED
+                | Spliterator.DISTINCT | Spliterator.NONNULL;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(range(from, to), characteristics), false);
+    }
+
+    /**
+     * Provides iterator (possibly empty) over {@link Record}s with keys starting with the prefix
+     * in <b>ascending</b> order according to {@link Record#compareTo(Record)}.
+     */
+    @NotNull
+    default Iterator<Record> prefix(@NotNull ByteBuffer prefix) throws IOException {
+        return range(prefix, prefixEnd(prefix));
+    }
+
+    /**
+     * The least key greater than all the keys starting with the prefix,
+     * or null if there is no such key.
+     * Keys are compared as signed bytes, so the largest byte is {@link Byte#MAX_VALUE}.
+     */
+    @Nullable
+    static ByteBuffer prefixEnd(@NotNull ByteBuffer prefix) {
+        int length = prefix.remaining();
+        while (length > 0 && prefix.get(prefix.position() + length - 1) == Byte.MAX_VALUE) {
+            length--;
+        }
+        if (length == 0) {
+            return null;
+        }
+        final ByteBuffer end = ByteBuffer.allocate(length);
+        end.put(prefix.duplicate().limit(prefix.position() + length)).flip();
+        end.put(length - 1, (byte) (end.get(length - 1) + 1));
+        return end;
+    }
+
+    /**
+     * Provides {@link Cursor} positioned at the first {@link Record}.
+     * The storage should not be modified while the cursor is in use.
+     * The default implementation gets a new iterator on every seek.
+     */
+    @NotNull
+    default Cursor cursor() throws IOException {
+        final DAO dao = this;
+        return new Cursor() {
+            private Iterator<Record> iterator = dao.iterator(ByteBuffer.allocate(0));
+
+            @Override
+            public void seek(@NotNull final ByteBuffer key) throws IOException {
+                iterator = dao.iterator(key);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @NotNull
+            @Override
+            public Record next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+                iterator = Iters.empty();
+            }
+        };
+    }
+
     /**
      * Obtains {@link Record} corresponding to given key.
      *
@@ -84,6 +191,23 @@ public interface DAO extends Closeable {
         }
     }
 
+    /**
+     * Obtains values of the given keys, keys with no value are absent from the result.
+     * The default implementation gets the keys one by one.
+     */
+    @NotNull
+    default Map<ByteBuffer, ByteBuffer> getAll(@NotNull Collection<ByteBuffer> keys) throws IOException {
+        final Map<ByteBuffer, ByteBuffer> values = new HashMap<>();
+        for (final ByteBuffer key : keys) {
+            try {
+                values.put(key, get(key));
+            } catch (NoSuchElementException expected) {
+                // No value
+            }
+        }
+        return values;
+    }
+
     /**
      * Inserts or updates value by given key.
      */
@@ -91,11 +215,65 @@ public interface DAO extends Closeable {
             @NotNull ByteBuffer key,
             @NotNull ByteBuffer value) throws IOException;
 
+    /**
+     * Inserts or updates value by given key, the value disappears once the time-to-live is over.
+     * Optional: the default implementation doesn't support time-to-live.
+     *
+     * @throws IllegalArgumentException      if the time-to-live is not positive
+     * @throws UnsupportedOperationException if the storage doesn't support time-to-live
+     */
+    default void upsert(
+            @NotNull ByteBuffer key,
+            @NotNull ByteBuffer value,
+            @NotNull Duration ttl) throws IOException {
+        throw new UnsupportedOperationException("Time-to-live is not supported");
+    }
+
+    /**
+     * Combines the operand with the current value of the key using the merge operator of the storage.
+     * Doesn't read the current value, so it is as cheap as {@link #upsert(ByteBuffer, ByteBuffer)}.
+     * Optional: the default implementation doesn't support merge.
+     *
+     * @throws IllegalStateException         if the storage has no merge operator
+     * @throws UnsupportedOperationException if the storage doesn't support merge
+     */
+    default void merge(
+            @NotNull ByteBuffer key,
+            @NotNull ByteBuffer operand) throws IOException {
+        throw new UnsupportedOperationException("Merge is not supported");
+    }
+
+    /**
+     * Inserts or updates values of all the records, later records win over earlier ones with the same key.
+     * The records may come in any order.
+     * The default implementation upserts them one by one.
+     */
+    default void bulkLoad(@NotNull Iterator<Record> records) throws IOException {
+        while (records.hasNext()) {
+            final Record record = records.next();
+            upsert(record.getKey(), record.getValue());
+        }
+    }
+
     /**
      * Removes value by given key.
      */
     void remove(@NotNull ByteBuffer key) throws IOException;
 
+    /**
+     * Removes all the values from "from" key (inclusive) until "to" key (exclusive).
+     * The default implementation removes the keys one by one.
+     */
+    default void deleteRange(
+            @NotNull ByteBuffer from,
+            @NotNull ByteBuffer to) throws IOException {
+        final List<ByteBuffer> keys = new ArrayList<>();
+        range(from, to).forEachRemaining(record -> keys.add(record.getKey()));
+        for (final ByteBuffer key : keys) {
+            remove(key);
+        }
+    }
+
     /**
      * Perform compaction
      */
@@ -0,0 +1,65 @@
+package ru.mail.polis;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * How keys are chosen by the benchmarks and the load generator.
+ */
+public enum Distribution {
+    /**
+     * Every key is as likely.
+     */
+    UNIFORM {
+        @NotNull
+        @Override
+        public IndexGenerator generator(final long items) {
+            return (random, count) -> (long) (random.nextDouble() * count);
+        }
+    },
+    /**
+     * A few keys spread over the key space are much more popular than the rest.
+     */
+    ZIPFIAN {
+        @NotNull
+        @Override
+        public IndexGenerator generator(final long items) {
+            final ZipfianGenerator zipfian = new ZipfianGenerator(items);
+            return (random, count) -> Math.floorMod(zipfian.next(random), count);
+        }
+    },
+    /**
+     * The most recently inserted keys are the most popular.
+     */
+    LATEST {
+        @NotNull
+        @Override
+        public IndexGenerator generator(final long items) {
+            final ZipfianGenerator zipfian = new ZipfianGenerator(items);
+            return (random, count) -> Math.max(count - 1 - zipfian.nextRank(random), 0);
+        }
+    };
+
+    /**
+     * Generator of indexes.
+     *
+     * @param items - number of the items to prepare the distribution for
+     */
+    @NotNull
+    public abstract IndexGenerator generator(long items);
+
+    /**
+     * Chooses indexes.
+     */
+    @FunctionalInterface
+    public interface IndexGenerator {
+        /**
+         * Next index in [0, count).
+         *
+         * @param random - source of randomness
+         * @param count  - number of the items now
+         */
+        long next(@NotNull Random random, long count);
+    }
+}
@@ -0,0 +1,239 @@
+package ru.mail.polis;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a {@link Workload} against a {@link DAO} in the manner of YCSB: the records are loaded first,
+ * then the operations run on several threads and their latencies go to a {@link Histogram} per operation.
+ * DAO implementations are not required to be thread-safe, so the threads take turns on the storage
+ * and the latencies include the wait, as a client sharing the storage would see it. More threads
+ * thus measure the queueing for the storage rather than parallel access, and the report says so;
+ * threads=1 gives the baseline throughput of the storage itself.
+ *
+ * <p>Settings are given as name=value: workload (name or YCSB letter, B by default), distribution
+ * (the one of the workload by default), threads (4), records (100000), operations (1000000),
+ * valueSize (100) and scanLength (100, the longest scan).
+ */
+public final class LoadGenerator {
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+    private static final double[] PERCENTILES = {50, 95, 99, 99.9};
+    private final Workload workload;
+    private final Distribution distribution;
+    private final int threads;
+    private final long records;
+    private final long operations;
+    private final int valueSize;
+    private final int scanLength;
+    private final Map<Workload.Operation, Histogram> latencies = new EnumMap<>(Workload.Operation.class);
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong remaining = new AtomicLong();
+
+    private LoadGenerator(@NotNull final Map<String, String> settings) {
+        this.workload = Workload.of(settings.getOrDefault("workload", "B"));
+        final String distributionName = settings.get("distribution");
+        this.distribution = distributionName == null
+                ? workload.getDistribution()
+                : Distribution.valueOf(distributionName.toUpperCase(Locale.ROOT));
+        this.threads = Integer.parseInt(settings.getOrDefault("threads", "4"));
+        this.records = Long.parseLong(settings.getOrDefault("records", "100000"));
+        this.operations = Long.parseLong(settings.getOrDefault("operations", "1000000"));
+        this.valueSize = Integer.parseInt(settings.getOrDefault("valueSize", "100"));
+        this.scanLength = Integer.parseInt(settings.getOrDefault("scanLength", "100"));
+        if (threads <= 0 || records <= 0 || operations < 0 || valueSize < 0 || scanLength <= 0) {
+            throw new IllegalArgumentException("Bad load settings: " + settings);
+        }
+        for (final Workload.Operation operation : Workload.Operation.values()) {
+            latencies.put(operation, new Histogram());
+        }
+    }
+
+    /**
+     * Load generator with the settings given as name=value arguments.
+     */
+    @NotNull
+    public static LoadGenerator parse(@NotNull final String... args) {
+        final Map<String, String> settings = new HashMap<>();
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            final String name = arg.substring(arg.startsWith("--") ? 2 : 0, separator);
+            if (!List.of("workload", "distribution", "threads", "records", "operations", "valueSize", "scanLength")
+                    .contains(name)) {
+                throw new IllegalArgumentException("Unknown setting: " + name);
+            }
+            settings.put(name, arg.substring(separator + 1));
+        }
+        return new LoadGenerator(settings);
+    }
+
+    @NotNull
+    private static ByteBuffer key(final long index) {
+        return ByteBuffer.wrap(String.format(Locale.ROOT, "user%012d", index).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Loads the records, runs the operations and logs the report.
+     */
+    public void run(@NotNull final DAO dao) throws IOException, InterruptedException {
+        final Random random = new Random();
+        final byte[] value = new byte[valueSize];
+        random.nextBytes(value);
+        log.info("Loading {} records", records);
+        long start = System.nanoTime();
+        for (long i = 0; i < records; i++) {
+            dao.upsert(key(i), ByteBuffer.wrap(value));
+        }
+        log.info("Loaded in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        inserted.set(records);
+        remaining.set(operations);
+
+        log.info("Running {} with {} keys on {} threads taking turns on the storage",
+                workload, distribution, threads);
+        final Distribution.IndexGenerator generator = distribution.generator(records);
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        start = System.nanoTime();
+        try {
+            final List<Future<Void>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                workers.add(pool.submit(() -> {
+                    work(dao, generator, value);
+                    return null;
+                }));
+            }
+            for (final Future<Void> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Operation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        report(System.nanoTime() - start);
+    }
+
+    private void work(
+            @NotNull final DAO dao,
+            @NotNull final Distribution.IndexGenerator generator,
+            @NotNull final byte[] value) throws IOException {
+        final Random random = ThreadLocalRandom.current();
+        while (remaining.getAndDecrement() > 0) {
+            final Workload.Operation operation = workload.next(random);
+            final ByteBuffer key = operation == Workload.Operation.INSERT
+                    ? key(inserted.getAndIncrement())
+                    : key(generator.next(random, inserted.get()));
+            final int length = 1 + random.nextInt(scanLength);
+            final long start = System.nanoTime();
+            synchronized (dao) {
+                execute(dao, operation, key, ByteBuffer.wrap(value), length);
+            }
+            latencies.get(operation).record(System.nanoTime() - start);
+        }
+    }
+
+    private static void execute(
+            @NotNull final DAO dao,
+            @NotNull final Workload.Operation operation,
+            @NotNull final ByteBuffer key,
+            @NotNull final ByteBuffer value,
+            final int scanLength) throws IOException {
+        switch (operation) {
+            case READ:
+                read(dao, key);
+                break;
+            case UPDATE:
+            case INSERT:
+                dao.upsert(key, value);
+                break;
+            case SCAN:
+                scan(dao, key, scanLength);
+                break;
+            case READ_MODIFY_WRITE:
+                read(dao, key);
+                dao.upsert(key, value);
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    private static void read(@NotNull final DAO dao, @NotNull final ByteBuffer key) throws IOException {
+        try {
+            dao.get(key);
+        } catch (NoSuchElementException e) {
+            // Inserted keys may be read before they are written
+        }
+    }
+
+    private static void scan(
+            @NotNull final DAO dao,
+            @NotNull final ByteBuffer key,
+            final int length) throws IOException {
+        final Iterator<Record> scan = dao.iterator(key);
+        for (int i = 0; i < length && scan.hasNext(); i++) {
+            scan.next();
+        }
+    }
+
+    private void report(final long elapsed) {
+        log.info("{} operations in {} ms, {} ops/s",
+                operations,
+                TimeUnit.NANOSECONDS.toMillis(elapsed),
+                String.format(Locale.ROOT, "%.0f", operations * 1e9 / Math.max(elapsed, 1)));
+        if (threads > 1) {
+            log.info("Operations are serialized on the storage, so the latencies below include the wait"
+                    + " for the other {} threads; run with threads=1 for the baseline", threads - 1);
+        }
+        for (final Map.Entry<Workload.Operation, Histogram> entry : latencies.entrySet()) {
+            final Histogram histogram = entry.getValue();
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            final StringBuilder line = new StringBuilder();
+            line.append(entry.getKey())
+                    .append(": count ").append(histogram.getCount())
+                    .append(String.format(Locale.ROOT, ", mean %.1f us", histogram.getMean() / 1000));
+            for (final double percentile : PERCENTILES) {
+                line.append(", p").append(percentile == Math.rint(percentile) ? (long) percentile : percentile)
+                        .append(' ').append(micros(histogram.getValueAtPercentile(percentile))).append(" us");
+            }
+            line.append(", max ").append(micros(histogram.getMax())).append(" us");
+            log.info(line.toString());
+        }
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Latencies of the operation in nanoseconds.
+     */
+    @NotNull
+    public Histogram getLatencies(@NotNull final Workload.Operation operation) {
+        return latencies.get(operation);
+    }
+}
@@ -0,0 +1,98 @@
+package ru.mail.polis;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Standard mixes of operations from the YCSB core workloads.
+ */
+public enum Workload {
+    /**
+     * Workload A: half reads, half updates.
+     */
+    UPDATE_HEAVY(Distribution.ZIPFIAN, 0.5, 0.5, 0, 0, 0),
+    /**
+     * Workload B: mostly reads.
+     */
+    READ_HEAVY(Distribution.ZIPFIAN, 0.95, 0.05, 0, 0, 0),
+    /**
+     * Workload C: reads only.
+     */
+    READ_ONLY(Distribution.ZIPFIAN, 1, 0, 0, 0, 0),
+    /**
+     * Workload D: new keys are inserted and read the most.
+     */
+    READ_LATEST(Distribution.LATEST, 0.95, 0, 0.05, 0, 0),
+    /**
+     * Workload E: short scans and inserts.
+     */
+    SCAN_HEAVY(Distribution.ZIPFIAN, 0, 0, 0.05, 0.95, 0),
+    /**
+     * Workload F: half reads, half read-modify-writes.
+     */
+    READ_MODIFY_WRITE(Distribution.ZIPFIAN, 0.5, 0, 0, 0, 0.5);
+
+    /**
+     * Operation of a workload.
+     */
+    public enum Operation {
+        READ,
+        UPDATE,
+        INSERT,
+        SCAN,
+        READ_MODIFY_WRITE
+    }
+
+    private final Distribution distribution;
+    private final double[] proportions;
+
+    Workload(@NotNull final Distribution distribution, final double... proportions) {
+        this.distribution = distribution;
+        this.proportions = proportions.clone();
+    }
+
+    /**
+     * Distribution of the keys the workload is defined with.
+     */
+    @NotNull
+    public Distribution getDistribution() {
+        return distribution;
+    }
+
+    /**
+     * Chooses the next operation according to the proportions.
+     */
+    @NotNull
+    public Operation next(@NotNull final Random random) {
+        final Operation[] operations = Operation.values();
+        double choice = random.nextDouble();
+        for (int i = 0; i < operations.length; i++) {
+            choice -= proportions[i];
+            if (choice < 0) {
+                return operations[i];
+            }
+        }
+        for (int i = operations.length - 1; i >= 0; i--) {
+            if (proportions[i] > 0) {
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException("No operations in " + this);
+    }
+
+    /**
+     * Workload by its name or YCSB letter, case insensitive.
+     */
+    @NotNull
+    public static Workload of(@NotNull final String name) {
+        if (name.length() == 1) {
+            final int letter = Character.toUpperCase(name.charAt(0)) - 'A';
+            if (letter >= 0 && letter < values().length) {
+                return values()[letter];
+            }
+        }
+        return valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,71 @@
+package ru.mail.polis;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Zipfian distribution of indexes in [0, items) as in YCSB: small ranks are the most popular.
+ * The ranks are scrambled by a hash, so the popular indexes are spread over the key space
+ * instead of being the first keys.
+ */
+public final class ZipfianGenerator {
+    static final double THETA = 0.99;
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private final long items;
+    private final double alpha;
+    private final double zetan;
+    private final double eta;
+
+    /**
+     * Creates generator over the items.
+     *
+     * @param items - number of the items
+     */
+    public ZipfianGenerator(final long items) {
+        this.items = items;
+        this.zetan = zeta(items);
+        this.alpha = 1.0 / (1.0 - THETA);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - THETA)) / (1 - zeta(2) / zetan);
+    }
+
+    private static double zeta(final long n) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, THETA);
+        }
+        return sum;
+    }
+
+    /**
+     * Popularity rank of the next item, 0 is the most popular.
+     */
+    public long nextRank(@NotNull final Random random) {
+        final double u = random.nextDouble();
+        final double uz = u * zetan;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, THETA)) {
+            return 1;
+        }
+        return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    /**
+     * Index of the next item.
+     */
+    public long next(@NotNull final Random random) {
+        return Math.floorMod(fnv(nextRank(random)), items);
+    }
+
+    private static long fnv(final long value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash ^= (value >>> (i * Byte.SIZE)) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
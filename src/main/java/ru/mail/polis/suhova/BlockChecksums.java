@@ -0,0 +1,182 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * CRC32C checksums of a table file cut into blocks of {@link #BLOCK_SIZE} bytes,
+ * the last block may be shorter. They cover everything before the checksums themselves.
+ */
+final class BlockChecksums {
+    static final int BLOCK_SIZE = 4 * 1024;
+    private final ChecksumMode mode;
+    private final long size;
+    /**
+     * The first block entirely after the cells.
+     */
+    private final int indexBlock;
+    private final int[] checksums;
+    private final BitSet verified;
+
+    /**
+     * Creates checksums of a table.
+     *
+     * @param mode      - when to verify the blocks
+     * @param size      - bytes covered by the checksums
+     * @param cellsSize - bytes of the cells, the index follows them
+     * @param checksums - checksum of every block
+     */
+    BlockChecksums(
+            @NotNull final ChecksumMode mode,
+            final long size,
+            final long cellsSize,
+            @NotNull final int[] checksums) {
+        this.mode = mode;
+        this.size = size;
+        this.indexBlock = blockCount(cellsSize);
+        this.checksums = checksums.clone();
+        this.verified = new BitSet(checksums.length);
+    }
+
+    static int blockCount(final long size) {
+        return (int) ((size + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    }
+
+    static int checksum(@NotNull final ByteBuffer data) {
+        final CRC32C crc = new CRC32C();
+        crc.update(data.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Whether a read of the bytes has to check blocks.
+     */
+    boolean needsCheck(final long position, final int length) {
+        if (mode == ChecksumMode.OFF || position + length > size) {
+            return false;
+        }
+        final int first = (int) (position / BLOCK_SIZE);
+        if (mode == ChecksumMode.ALWAYS && first < indexBlock) {
+            return true;
+        }
+        synchronized (verified) {
+            final int last = (int) ((position + length - 1) / BLOCK_SIZE);
+            return verified.nextClearBit(first) <= last;
+        }
+    }
+
+    /**
+     * Start of the block with the byte.
+     */
+    static long blockStart(final long position) {
+        return position / BLOCK_SIZE * BLOCK_SIZE;
+    }
+
+    /**
+     * End of the block with the byte before the position.
+     */
+    long blockEnd(final long position) {
+        return Math.min(blockStart(position + BLOCK_SIZE - 1), size);
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Checks the whole blocks read from the position, a block already verified is skipped in
+     * {@link ChecksumMode#FIRST_LOAD} mode, and so is an index block in {@link ChecksumMode#ALWAYS} mode,
+     * unless forced.
+     *
+     * @param blocks   - bytes of the blocks
+     * @param position - where the first block starts
+     * @param force    - check the blocks anyway
+     * @param file     - file of the blocks, for the error
+     * @throws ChecksumMismatchException if a block doesn't match its checksum
+     */
+    void check(
+            @NotNull final ByteBuffer blocks,
+            final long position,
+            final boolean force,
+            @NotNull final File file) throws ChecksumMismatchException {
+        final int first = (int) (position / BLOCK_SIZE);
+        for (int offset = 0; offset < blocks.limit(); offset += BLOCK_SIZE) {
+            final int block = first + offset / BLOCK_SIZE;
+            if (!force && (mode == ChecksumMode.FIRST_LOAD || block >= indexBlock) && isVerified(block)) {
+                continue;
+            }
+            final ByteBuffer data = blocks.duplicate();
+            data.limit(Math.min(offset + BLOCK_SIZE, blocks.limit())).position(offset);
+            if (checksum(data) != checksums[block]) {
+                throw new ChecksumMismatchException("Checksum mismatch in block " + block + " of " + file);
+            }
+            markVerified(block);
+        }
+    }
+
+    private boolean isVerified(final int block) {
+        synchronized (verified) {
+            return verified.get(block);
+        }
+    }
+
+    private void markVerified(final int block) {
+        synchronized (verified) {
+            verified.set(block);
+        }
+    }
+
+    /**
+     * Writes to a file computing the checksums of its blocks.
+     */
+    static final class Writer {
+        private final FileChannel channel;
+        private final List<Integer> checksums = new ArrayList<>();
+        private final CRC32C crc = new CRC32C();
+        private long position;
+
+        Writer(@NotNull final FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(@NotNull final ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                final int inBlock = (int) (position % BLOCK_SIZE);
+                final ByteBuffer chunk = data.duplicate();
+                chunk.limit(chunk.position() + Math.min(chunk.remaining(), BLOCK_SIZE - inBlock));
+                crc.update(chunk.duplicate());
+                final int written = chunk.remaining();
+                channel.write(chunk);
+                data.position(data.position() + written);
+                position += written;
+                if (position % BLOCK_SIZE == 0) {
+                    checksums.add((int) crc.getValue());
+                    crc.reset();
+                }
+            }
+        }
+
+        long position() {
+            return position;
+        }
+
+        /**
+         * Checksums of the blocks written, including the last incomplete one.
+         */
+        int[] finish() {
+            if (position % BLOCK_SIZE != 0) {
+                checksums.add((int) crc.getValue());
+                crc.reset();
+            }
+            return checksums.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
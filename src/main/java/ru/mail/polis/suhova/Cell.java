@@ -17,13 +17,20 @@ public class Cell implements Comparable<Cell> {
         return key.asReadOnlyBuffer();
     }
 
+    /**
+     * The key itself without a read-only wrapper, for comparisons on hot paths. Must not be modified.
+     */
+    ByteBuffer key() {
+        return key;
+    }
+
     public Value getValue() {
         return value;
     }
 
     @Override
     public int compareTo(@NotNull final Cell cell) {
-        final int cmp = key.compareTo(cell.getKey());
-        return cmp == 0 ? Long.compare(cell.getValue().getVersion(), value.getVersion()) : cmp;
+        final int cmp = key.compareTo(cell.key);
+        return cmp == 0 ? Long.compare(cell.value.getVersion(), value.getVersion()) : cmp;
     }
 }
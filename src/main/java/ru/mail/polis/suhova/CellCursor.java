@@ -0,0 +1,23 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * Ascending iterator over cells of a table, which can be moved to any key.
+ */
+interface CellCursor extends Iterator<Cell> {
+    /**
+     * Moves the cursor to the first cell with key greater than or equal to the given one.
+     */
+    void seek(@NotNull ByteBuffer key);
+
+    /**
+     * The newest version of the cells, so {@link Long#MAX_VALUE} if it is not known.
+     */
+    default long maxVersion() {
+        return Long.MAX_VALUE;
+    }
+}
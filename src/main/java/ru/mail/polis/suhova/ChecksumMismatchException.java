@@ -0,0 +1,14 @@
+package ru.mail.polis.suhova;
+
+import java.io.IOException;
+
+/**
+ * A block of a table doesn't match its checksum.
+ */
+public final class ChecksumMismatchException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    ChecksumMismatchException(final String message) {
+        super(message);
+    }
+}
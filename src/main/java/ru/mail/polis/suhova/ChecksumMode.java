@@ -0,0 +1,20 @@
+package ru.mail.polis.suhova;
+
+/**
+ * When the block checksums of the tables are verified on read.
+ */
+public enum ChecksumMode {
+    /**
+     * Every read of the cells checks the blocks it touches. The index after the cells is read
+     * on every step of a lookup, so its blocks are checked the first time they are read, as in {@link #FIRST_LOAD}.
+     */
+    ALWAYS,
+    /**
+     * A block is checked the first time it is read since the table is opened.
+     */
+    FIRST_LOAD,
+    /**
+     * Blocks are not checked on read, only by the scrubber.
+     */
+    OFF
+}
@@ -0,0 +1,25 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * User-defined garbage collection applied to live values as they stream through compaction.
+ */
+@FunctionalInterface
+public interface CompactionFilter {
+    CompactionFilter KEEP_ALL = (key, value) -> value;
+
+    /**
+     * Decides the fate of a value.
+     *
+     * @param key   - key of the value
+     * @param value - current value
+     * @return the very value given to keep it as it is, a new buffer to rewrite it, or null to drop the key.
+     *     A buffer equal to the value but not the same instance is taken as a rewrite
+     */
+    @Nullable
+    ByteBuffer filter(@NotNull ByteBuffer key, @NotNull ByteBuffer value);
+}
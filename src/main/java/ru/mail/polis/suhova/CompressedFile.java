@@ -0,0 +1,216 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Table file compressed with Deflate in independent chunks, for the cold tier.
+ * chunk... | tail | offset (long) - for every chunk and the end of the last one | n (integer)
+ * | compressed (long) | size (long)
+ * The chunks hold the first "compressed" bytes of the table, every chunk but the last has
+ * {@link #CHUNK_SIZE} bytes of them before compression, so a read decompresses only the chunks it needs.
+ * The tail holds the rest of the table as it is: the cell offsets, footer and the like, which lookups
+ * read between the keys and would otherwise decompress a chunk for every probe.
+ * The last {@link #CACHED_CHUNKS} chunks read are kept decompressed, as scans go through a chunk
+ * in several reads and lookups probe the same keys of the top levels of the binary search.
+ */
+final class CompressedFile {
+    static final String EXTENSION = ".z";
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CACHED_CHUNKS = 4;
+    private static final int TRAILER_SIZE = Integer.BYTES + 2 * Long.BYTES;
+    private final FileChannel channel;
+    private final long[] offsets;
+    private final long compressed;
+    private final long size;
+    private final Map<Integer, byte[]> cached = new LinkedHashMap<>(CACHED_CHUNKS, 0.75f, true);
+
+    private CompressedFile(
+            @NotNull final FileChannel channel,
+            @NotNull final long[] offsets,
+            final long compressed,
+            final long size) {
+        this.channel = channel;
+        this.offsets = offsets;
+        this.compressed = compressed;
+        this.size = size;
+    }
+
+    static boolean isCompressed(@NotNull final File file) {
+        return file.getName().endsWith(EXTENSION);
+    }
+
+    /**
+     * Reads the chunk index of the open file.
+     */
+    static CompressedFile open(@NotNull final FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        final ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        if (fileSize < TRAILER_SIZE) {
+            throw new IOException("Corrupted compressed file");
+        }
+        readFully(channel, trailer, fileSize - TRAILER_SIZE);
+        final int chunks = trailer.rewind().getInt();
+        final long compressed = trailer.getLong();
+        final long size = trailer.getLong();
+        final long indexOffset = fileSize - TRAILER_SIZE - (chunks + 1L) * Long.BYTES;
+        if (chunks < 0 || compressed < 0 || compressed > size || indexOffset < 0
+                || (compressed + CHUNK_SIZE - 1) / CHUNK_SIZE != chunks) {
+            throw new IOException("Corrupted compressed file");
+        }
+        final ByteBuffer index = ByteBuffer.allocate((chunks + 1) * Long.BYTES);
+        readFully(channel, index, indexOffset);
+        final long[] offsets = new long[chunks + 1];
+        index.rewind().asLongBuffer().get(offsets);
+        if (indexOffset - offsets[chunks] != size - compressed) {
+            throw new IOException("Corrupted compressed file");
+        }
+        return new CompressedFile(channel, offsets, compressed, size);
+    }
+
+    /**
+     * Writes the compressed copy of the file and forces it to the disk.
+     *
+     * @param source - the file
+     * @param target - where to write the copy
+     * @param length - how many bytes from the start of the file to compress, the rest is copied as it is
+     */
+    static void compress(
+            @NotNull final File source,
+            @NotNull final File target,
+            final long length) throws IOException {
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(
+                     target.toPath(),
+                     StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE)) {
+            final long size = in.size();
+            final long compressed = Math.min(length, size);
+            final int chunks = (int) ((compressed + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            final ByteBuffer index = ByteBuffer.allocate((chunks + 1) * Long.BYTES + TRAILER_SIZE);
+            final byte[] buffer = new byte[CHUNK_SIZE];
+            long offset = 0;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                final ByteBuffer data = ByteBuffer.allocate(
+                        (int) Math.min(CHUNK_SIZE, compressed - (long) chunk * CHUNK_SIZE));
+                readFully(in, data, (long) chunk * CHUNK_SIZE);
+                index.putLong(offset);
+                deflater.reset();
+                deflater.setInput(data.array());
+                deflater.finish();
+                while (!deflater.finished()) {
+                    final int deflated = deflater.deflate(buffer);
+                    out.write(ByteBuffer.wrap(buffer, 0, deflated));
+                    offset += deflated;
+                }
+            }
+            index.putLong(offset).putInt(chunks).putLong(compressed).putLong(size);
+            final ByteBuffer tail = ByteBuffer.allocate((int) (size - compressed));
+            readFully(in, tail, compressed);
+            out.write(tail.rewind());
+            out.write(index.rewind());
+            out.force(true);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Size of the file before compression.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Reads the bytes of the file before compression starting from the position, until the buffer is full
+     * or the end of the file.
+     */
+    void read(@NotNull final ByteBuffer buffer, final long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining() && current < compressed) {
+            final int chunk = (int) (current / CHUNK_SIZE);
+            final byte[] data = chunk(chunk);
+            final int from = (int) (current - (long) chunk * CHUNK_SIZE);
+            final int length = Math.min(buffer.remaining(), data.length - from);
+            buffer.put(data, from, length);
+            current += length;
+        }
+        if (buffer.hasRemaining() && current < size) {
+            final ByteBuffer tail = buffer.slice();
+            tail.limit((int) Math.min(tail.remaining(), size - current));
+            readFully(channel, tail, offsets[offsets.length - 1] + current - compressed);
+            buffer.position(buffer.position() + tail.position());
+        }
+    }
+
+    /**
+     * Decompressed chunk, taken from the cache if it is there. Chunks are decompressed outside the lock,
+     * so reads of different chunks go in parallel.
+     */
+    private byte[] chunk(final int chunk) throws IOException {
+        synchronized (cached) {
+            final byte[] data = cached.get(chunk);
+            if (data != null) {
+                return data;
+            }
+        }
+        final byte[] data = inflate(chunk);
+        synchronized (cached) {
+            cached.put(chunk, data);
+            final Iterator<Integer> eldest = cached.keySet().iterator();
+            while (cached.size() > CACHED_CHUNKS) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return data;
+    }
+
+    private byte[] inflate(final int chunk) throws IOException {
+        final ByteBuffer deflated = ByteBuffer.allocate((int) (offsets[chunk + 1] - offsets[chunk]));
+        readFully(channel, deflated, offsets[chunk]);
+        final byte[] data = new byte[(int) Math.min(CHUNK_SIZE, compressed - (long) chunk * CHUNK_SIZE)];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated.array());
+            int length = 0;
+            while (length < data.length) {
+                final int inflated = inflater.inflate(data, length, data.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Corrupted chunk " + chunk);
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted chunk " + chunk, e);
+        } finally {
+            inflater.end();
+        }
+        return data;
+    }
+
+    private static void readFully(
+            @NotNull final FileChannel channel,
+            @NotNull final ByteBuffer buffer,
+            final long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of compressed file");
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+
+/**
+ * Settings of {@link TurboDAO}.
+ */
+public final class Config {
+    private long flushThreshold;
+    private long tableSize;
+    private int prefixLength;
+    private int maxOpenFiles = 128;
+    private int startupThreads = Runtime.getRuntime().availableProcessors();
+    private boolean preload;
+    private boolean verify;
+    private ChecksumMode checksumMode = ChecksumMode.FIRST_LOAD;
+    private long scrubInterval;
+    private File coldDir;
+    private long hotSize = -1;
+    private boolean jmx;
+    private MergeOperator mergeOperator;
+
+    /**
+     * Creates settings with the given flush threshold and defaults for everything else.
+     *
+     * @param flushThreshold - when the table reaches this size, it flushes
+     */
+    public Config(final long flushThreshold) {
+        this.flushThreshold = flushThreshold;
+    }
+
+    public long getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    @NotNull
+    public Config setFlushThreshold(final long flushThreshold) {
+        this.flushThreshold = flushThreshold;
+        return this;
+    }
+
+    /**
+     * Target size of a single SSTable written by flush or compaction, twice the flush threshold by default.
+     */
+    public long getTableSize() {
+        return tableSize > 0 ? tableSize : 2 * flushThreshold;
+    }
+
+    @NotNull
+    public Config setTableSize(final long tableSize) {
+        this.tableSize = tableSize;
+        return this;
+    }
+
+    /**
+     * Length of the key prefixes put into the prefix filter of every table, 0 (the default) for no filter.
+     */
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    @NotNull
+    public Config setPrefixLength(final int prefixLength) {
+        this.prefixLength = prefixLength;
+        return this;
+    }
+
+    /**
+     * How many table files are kept open when not in use, 128 by default.
+     * Tables are opened on first access and the least recently used ones are closed first.
+     */
+    public int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    @NotNull
+    public Config setMaxOpenFiles(final int maxOpenFiles) {
+        this.maxOpenFiles = maxOpenFiles;
+        return this;
+    }
+
+    /**
+     * How many threads open and load the tables at startup, the number of processors by default.
+     */
+    public int getStartupThreads() {
+        return startupThreads;
+    }
+
+    @NotNull
+    public Config setStartupThreads(final int startupThreads) {
+        this.startupThreads = startupThreads;
+        return this;
+    }
+
+    /**
+     * Whether the footers, range tombstones and prefix filters of all the tables are loaded and checked
+     * at startup rather than on first access, off by default.
+     */
+    public boolean isPreload() {
+        return preload;
+    }
+
+    @NotNull
+    public Config setPreload(final boolean preload) {
+        this.preload = preload;
+        return this;
+    }
+
+    /**
+     * Whether all the cells of the tables are checked in the background after startup, off by default.
+     */
+    public boolean isVerify() {
+        return verify;
+    }
+
+    @NotNull
+    public Config setVerify(final boolean verify) {
+        this.verify = verify;
+        return this;
+    }
+
+    /**
+     * When the block checksums of the tables are verified on read, {@link ChecksumMode#FIRST_LOAD} by default.
+     */
+    @NotNull
+    public ChecksumMode getChecksumMode() {
+        return checksumMode;
+    }
+
+    @NotNull
+    public Config setChecksumMode(@NotNull final ChecksumMode checksumMode) {
+        this.checksumMode = checksumMode;
+        return this;
+    }
+
+    /**
+     * Milliseconds between the rounds of the background scrubber checking all the blocks of all the tables,
+     * 0 (the default) for no scrubber.
+     */
+    public long getScrubInterval() {
+        return scrubInterval;
+    }
+
+    @NotNull
+    public Config setScrubInterval(final long scrubInterval) {
+        this.scrubInterval = scrubInterval;
+        return this;
+    }
+
+    /**
+     * Directory of the cold tier, none by default.
+     * If it is set, compaction writes its output there compressed, while flushes stay in the data directories.
+     * The newest tables of the data directories up to {@link #getHotSize()} are not compacted into it.
+     */
+    @Nullable
+    public File getColdDir() {
+        return coldDir;
+    }
+
+    @NotNull
+    public Config setColdDir(@Nullable final File coldDir) {
+        this.coldDir = coldDir;
+        return this;
+    }
+
+    /**
+     * With the cold tier, how many bytes of the newest tables of the data directories compaction leaves there,
+     * twice the table size by default.
+     */
+    public long getHotSize() {
+        return hotSize >= 0 ? hotSize : 2 * getTableSize();
+    }
+
+    @NotNull
+    public Config setHotSize(final long hotSize) {
+        this.hotSize = hotSize;
+        return this;
+    }
+
+    /**
+     * Whether the {@link Metrics} of the storage are registered in the platform MBean server, off by default.
+     */
+    public boolean isJmx() {
+        return jmx;
+    }
+
+    @NotNull
+    public Config setJmx(final boolean jmx) {
+        this.jmx = jmx;
+        return this;
+    }
+
+    /**
+     * Operator behind {@link ru.mail.polis.DAO#merge(java.nio.ByteBuffer, java.nio.ByteBuffer)}, none by default.
+     * The storage doesn't open if its tables have merge operands and the operator is not set.
+     */
+    @Nullable
+    public MergeOperator getMergeOperator() {
+        return mergeOperator;
+    }
+
+    @NotNull
+    public Config setMergeOperator(@Nullable final MergeOperator mergeOperator) {
+        this.mergeOperator = mergeOperator;
+        return this;
+    }
+}
@@ -0,0 +1,140 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of open files for reading, the least recently used ones are closed first.
+ * A file is held open while its {@link Handle} is in use, even if the cache is over the limit then.
+ */
+final class FileCache {
+    private final int capacity;
+    private final Map<File, Handle> handles = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Creates cache.
+     *
+     * @param capacity - how many files are kept open when not in use
+     */
+    FileCache(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Opens the file or takes the already open one. The handle must be closed after use.
+     */
+    synchronized Handle acquire(@NotNull final File file) throws IOException {
+        Handle handle = handles.get(file);
+        if (handle == null) {
+            final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                handle = new Handle(channel, CompressedFile.isCompressed(file) ? CompressedFile.open(channel) : null);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            handles.put(file, handle);
+        }
+        handle.refs++;
+        evict();
+        return handle;
+    }
+
+    /**
+     * Closes the file once it is not in use, e.g. before it is deleted.
+     */
+    synchronized void invalidate(@NotNull final File file) {
+        final Handle handle = handles.remove(file);
+        if (handle != null) {
+            handle.evicted = true;
+            if (handle.refs == 0) {
+                handle.closeChannel();
+            }
+        }
+    }
+
+    /**
+     * How many files are open now.
+     */
+    synchronized int size() {
+        return handles.size();
+    }
+
+    private synchronized void release(@NotNull final Handle handle) {
+        handle.refs--;
+        if (handle.evicted && handle.refs == 0) {
+            handle.closeChannel();
+        } else {
+            evict();
+        }
+    }
+
+    private void evict() {
+        final Iterator<Handle> eldest = handles.values().iterator();
+        while (handles.size() > capacity && eldest.hasNext()) {
+            final Handle handle = eldest.next();
+            if (handle.refs == 0) {
+                eldest.remove();
+                handle.evicted = true;
+                handle.closeChannel();
+            }
+        }
+    }
+
+    /**
+     * Open file taken from the cache. A {@link CompressedFile} is read as it was before compression.
+     */
+    final class Handle implements Closeable {
+        private final FileChannel channel;
+        private final CompressedFile compressed;
+        private int refs;
+        private boolean evicted;
+
+        private Handle(@NotNull final FileChannel channel, final CompressedFile compressed) {
+            this.channel = channel;
+            this.compressed = compressed;
+        }
+
+        FileChannel channel() {
+            return channel;
+        }
+
+        void read(@NotNull final ByteBuffer buffer, final long position) throws IOException {
+            if (compressed == null) {
+                channel.read(buffer, position);
+            } else {
+                compressed.read(buffer, position);
+            }
+        }
+
+        long size() throws IOException {
+            return compressed == null ? channel.size() : compressed.size();
+        }
+
+        private void closeChannel() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Gives the file back to the cache.
+         */
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes of the table set. Every flush, compaction or bulk load
+ * is one edit adding and removing tables, so the set changes atomically,
+ * and the tables are opened at startup from the metadata and the directories in the log
+ * without reading them or listing the directories.
+ * Edit: payload size (integer) | CRC32 of the payload (integer) | payload
+ * Payload: n (integer) | generation (integer) | {@link TableMeta} - for every added table,
+ * m (integer) | generation (integer) - for every removed table,
+ * the greatest generation ever added (integer), absent in the logs written before it was there,
+ * {@link TableMeta#getDirectory()} (integer) - for every added table in the same order,
+ * absent in the logs written before they were there.
+ * An edit torn by a crash fails the check and is cut off with everything after it.
+ * A table file is placed before its edit is written, so a crash leaves no live table without its file,
+ * only files of no live table, which {@link TurboDAO#sweep()} deletes.
+ */
+final class Manifest implements Closeable {
+    static final String NAME = "MANIFEST";
+    private static final String TEMP = "MANIFEST.tmp";
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    /**
+     * The log is rewritten as one edit at startup once it has more edits.
+     */
+    private static final int MAX_EDITS = 1000;
+    private final NavigableMap<Integer, TableMeta> tables;
+    private int lastGeneration;
+    private FileChannel log;
+
+    private Manifest(@NotNull final NavigableMap<Integer, TableMeta> tables, final int lastGeneration) {
+        this.tables = tables;
+        this.lastGeneration = lastGeneration;
+    }
+
+    static boolean exists(@NotNull final File dir) {
+        return new File(dir, NAME).exists();
+    }
+
+    /**
+     * Replays the log of the directory.
+     *
+     * @param dir - directory of the log
+     */
+    static Manifest open(@NotNull final File dir) throws IOException {
+        final File file = new File(dir, NAME);
+        final ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        final NavigableMap<Integer, TableMeta> tables = new TreeMap<>();
+        int lastGeneration = -1;
+        int edits = 0;
+        int valid = 0;
+        while (contents.remaining() >= HEADER_SIZE) {
+            final int size = contents.getInt();
+            final int checksum = contents.getInt();
+            if (size < 0 || size > contents.remaining()) {
+                break;
+            }
+            final byte[] payload = new byte[size];
+            contents.get(payload);
+            if (checksum(payload) != checksum) {
+                break;
+            }
+            lastGeneration = Math.max(lastGeneration, replay(payload, tables));
+            valid = contents.position();
+            edits++;
+        }
+        if (edits > MAX_EDITS) {
+            return create(dir, tables, lastGeneration);
+        }
+        final Manifest manifest = new Manifest(tables, lastGeneration);
+        manifest.log = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        manifest.log.truncate(valid);
+        manifest.log.position(valid);
+        return manifest;
+    }
+
+    /**
+     * Starts a new log of the directory with the given tables.
+     *
+     * @param lastGeneration - the greatest generation ever added, so it is not reused
+     */
+    static Manifest create(
+            @NotNull final File dir,
+            @NotNull final Map<Integer, TableMeta> tables,
+            final int lastGeneration) throws IOException {
+        final File tmp = new File(dir, TEMP);
+        try (FileChannel channel = FileChannel.open(
+                tmp.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            channel.write(edit(tables, Collections.emptyList(), lastGeneration));
+            channel.force(true);
+        }
+        final File file = new File(dir, NAME);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(dir);
+        final Manifest manifest = new Manifest(new TreeMap<>(tables), lastGeneration);
+        manifest.log = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return manifest;
+    }
+
+    /**
+     * Live tables by generation.
+     */
+    NavigableMap<Integer, TableMeta> getTables() {
+        return Collections.unmodifiableNavigableMap(tables);
+    }
+
+    /**
+     * Generation greater than that of any table ever added, so no file of a removed table is reused.
+     */
+    int nextGeneration() {
+        return lastGeneration + 1;
+    }
+
+    /**
+     * Appends an edit and waits until it is on the disk.
+     */
+    void apply(
+            @NotNull final Map<Integer, TableMeta> added,
+            @NotNull final Collection<Integer> removed) throws IOException {
+        int last = lastGeneration;
+        for (final int gen : added.keySet()) {
+            last = Math.max(last, gen);
+        }
+        log.write(edit(added, removed, last));
+        log.force(false);
+        tables.keySet().removeAll(removed);
+        tables.putAll(added);
+        lastGeneration = last;
+    }
+
+    /**
+     * Writes the contents of the file to the disk.
+     */
+    static void syncFile(@NotNull final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Writes the renames and deletions in the directory to the disk.
+     * Directories can't be opened on some platforms, there it is left to the file system.
+     */
+    static void syncDirectory(@NotNull final File dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException expected) {
+            // Windows
+        }
+    }
+
+    private static ByteBuffer edit(
+            @NotNull final Map<Integer, TableMeta> added,
+            @NotNull final Collection<Integer> removed,
+            final int lastGeneration) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(added.size());
+            for (final Map.Entry<Integer, TableMeta> table : added.entrySet()) {
+                out.writeInt(table.getKey());
+                table.getValue().write(out);
+            }
+            out.writeInt(removed.size());
+            for (final int gen : removed) {
+                out.writeInt(gen);
+            }
+            out.writeInt(lastGeneration);
+            for (final TableMeta table : added.values()) {
+                out.writeInt(table.getDirectory());
+            }
+        }
+        final byte[] payload = bytes.toByteArray();
+        return ByteBuffer.allocate(HEADER_SIZE + payload.length)
+                .putInt(payload.length)
+                .putInt(checksum(payload))
+                .put(payload)
+                .rewind();
+    }
+
+    /**
+     * Applies an edit to the tables.
+     *
+     * @param payload - the edit
+     * @param tables  - live tables
+     * @return the greatest generation ever added
+     */
+    private static int replay(
+            @NotNull final byte[] payload,
+            @NotNull final NavigableMap<Integer, TableMeta> tables) throws IOException {
+        int lastGeneration = -1;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            final TableMeta[] added = new TableMeta[in.readInt()];
+            for (int i = 0; i < added.length; i++) {
+                final int gen = in.readInt();
+                added[i] = TableMeta.read(in);
+                tables.put(gen, added[i]);
+                lastGeneration = Math.max(lastGeneration, gen);
+            }
+            final int removedCount = in.readInt();
+            for (int i = 0; i < removedCount; i++) {
+                tables.remove(in.readInt());
+            }
+            if (in.available() >= Integer.BYTES) {
+                lastGeneration = Math.max(lastGeneration, in.readInt());
+            }
+            if (in.available() >= added.length * Integer.BYTES) {
+                for (final TableMeta table : added) {
+                    table.withDirectory(in.readInt());
+                }
+            }
+        }
+        return lastGeneration;
+    }
+
+    private static int checksum(@NotNull final byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+}
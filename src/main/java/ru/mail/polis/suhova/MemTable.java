@@ -2,51 +2,165 @@ package ru.mail.polis.suhova;
 
 import com.google.common.collect.Iterators;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MemTable implements Table {
+    private static final AtomicLong CLOCK = new AtomicLong();
     private final NavigableMap<ByteBuffer, Value> map = new TreeMap<>();
+    private final List<RangeTombstone> rangeTombstones = new ArrayList<>();
     private long size;
 
     public int getEntryCount() {
-        return map.size();
+        return map.size() + rangeTombstones.size();
+    }
+
+    /**
+     * Version for a new write: the current time in nanoseconds of millisecond precision,
+     * bumped if needed to stay strictly greater than the previous one.
+     * So the order of writes is kept even within a millisecond, e.g. for a range tombstone and an upsert.
+     */
+    private static long nextVersion() {
+        final long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        return CLOCK.accumulateAndGet(now, (prev, time) -> Math.max(prev + 1, time));
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Cell> iterator(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        return cells(subMap(from, to));
     }
 
     @NotNull
     @Override
-    public Iterator<Cell> iterator(@NotNull final ByteBuffer from) {
+    public Iterator<Cell> descendingIterator(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        return cells(subMap(from, to).descendingMap());
+    }
+
+    @NotNull
+    @Override
+    public CellCursor cursor() {
+        return new CellCursor() {
+            private Iterator<Cell> cells = iterator(ByteBuffer.allocate(0));
+
+            @Override
+            public void seek(@NotNull final ByteBuffer key) {
+                cells = iterator(key);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return cells.hasNext();
+            }
+
+            @Override
+            public Cell next() {
+                return cells.next();
+            }
+        };
+    }
+
+    private NavigableMap<ByteBuffer, Value> subMap(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        return to == null ? map.tailMap(from, true) : map.subMap(from, true, to, false);
+    }
+
+    private static Iterator<Cell> cells(@NotNull final NavigableMap<ByteBuffer, Value> map) {
         return Iterators.transform(
-                map.tailMap(from).entrySet().iterator(),
+                map.entrySet().iterator(),
                 e -> new Cell(Objects.requireNonNull(e).getKey(), e.getValue()));
     }
 
     @Override
     public void upsert(@NotNull final ByteBuffer key, @NotNull final ByteBuffer value) {
-        final Value prev = map.put(key.duplicate(), new Value(value.duplicate(), System.currentTimeMillis()));
+        upsert(key, value, Value.NEVER);
+    }
+
+    @Override
+    public void upsert(@NotNull final ByteBuffer key, @NotNull final ByteBuffer value, final long expire) {
+        put(key.duplicate(), new Value(value.duplicate(), nextVersion(), expire));
+    }
+
+    /**
+     * Combines the operand with the value already kept in the table, if any,
+     * otherwise stores it as is to be combined with older tables later.
+     */
+    @Override
+    public void merge(
+            @NotNull final ByteBuffer key,
+            @NotNull final ByteBuffer operand,
+            @NotNull final MergeOperator operator) {
+        final long version = nextVersion();
+        final Value prev = map.get(key);
+        final Value value;
         if (prev == null) {
-            size += key.remaining() + value.remaining() + Long.BYTES;
+            value = Value.operand(operand.duplicate(), version);
+        } else if (prev.isTombstone() || prev.isExpired(System.currentTimeMillis())) {
+            value = new Value(operand.duplicate(), version);
         } else {
-            size += value.remaining() - prev.getData().remaining();
+            final ByteBuffer merged = operator.merge(prev.getData().asReadOnlyBuffer(), operand.asReadOnlyBuffer());
+            value = prev.isOperand()
+                    ? Value.operand(merged, version)
+                    : new Value(merged, version, prev.getExpire());
         }
+        put(key.duplicate(), value);
     }
 
     @Override
     public void remove(@NotNull final ByteBuffer key) {
-        final Value prev = map.put(key, Value.tombstone(System.currentTimeMillis()));
+        put(key, Value.tombstone(nextVersion()));
+    }
+
+    /**
+     * Stores a single tombstone for the whole range,
+     * the values of the range kept in the table are not needed anymore.
+     */
+    public void deleteRange(@NotNull final ByteBuffer from, @NotNull final ByteBuffer to) {
+        final NavigableMap<ByteBuffer, Value> deleted = map.subMap(from, true, to, false);
+        for (final Map.Entry<ByteBuffer, Value> entry : deleted.entrySet()) {
+            size -= entry.getKey().remaining() + sizeOf(entry.getValue());
+        }
+        deleted.clear();
+        rangeTombstones.add(new RangeTombstone(from.duplicate(), to.duplicate(), nextVersion()));
+        size += from.remaining() + to.remaining() + Long.BYTES;
+    }
+
+    @NotNull
+    @Override
+    public Collection<RangeTombstone> getRangeTombstones() {
+        return rangeTombstones;
+    }
+
+    private void put(@NotNull final ByteBuffer key, @NotNull final Value value) {
+        final Value prev = map.put(key, value);
         if (prev == null) {
-            size += key.remaining() + Long.BYTES;
+            size += key.remaining() + sizeOf(value);
         } else {
-            if (!prev.isTombstone()) {
-                size = size - prev.getData().remaining();
-            }
+            size += sizeOf(value) - sizeOf(prev);
         }
     }
 
+    private static long sizeOf(@NotNull final Value value) {
+        long size = Long.BYTES;
+        if (value.isExpiring()) {
+            size += Long.BYTES;
+        }
+        if (!value.isTombstone()) {
+            size += value.getData().remaining();
+        }
+        return size;
+    }
+
     @Override
     public long sizeInBytes() {
         return size;
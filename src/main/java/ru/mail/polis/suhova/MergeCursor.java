@@ -0,0 +1,60 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.mail.polis.Cursor;
+import ru.mail.polis.Record;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Cursor over live cells of several tables.
+ * Seeking moves the cursors of the tables, which keep their positions between seeks,
+ * and restarts the same merge over them.
+ */
+final class MergeCursor implements Cursor {
+    private final List<CellCursor> sources;
+    private final MergeIterator merge;
+
+    /**
+     * Creates cursor over the tables.
+     *
+     * @param sources         - cursors of the tables, newer tables first
+     * @param rangeTombstones - range tombstones of all the tables
+     * @param operator        - operator for merge operands, if set
+     */
+    MergeCursor(
+            @NotNull final List<CellCursor> sources,
+            @NotNull final Collection<RangeTombstone> rangeTombstones,
+            @Nullable final MergeOperator operator) {
+        this.sources = sources;
+        this.merge = new MergeIterator(sources, false, rangeTombstones, operator, System.currentTimeMillis());
+    }
+
+    @Override
+    public void seek(@NotNull final ByteBuffer key) {
+        for (final CellCursor source : sources) {
+            source.seek(key);
+        }
+        merge.reset(System.currentTimeMillis());
+    }
+
+    @Override
+    public boolean hasNext() {
+        return merge.hasNext();
+    }
+
+    @NotNull
+    @Override
+    public Record next() {
+        final Cell cell = merge.next();
+        return Record.of(cell.key(), cell.getValue().getData());
+    }
+
+    @Override
+    public void close() {
+        // Tables are closed by the storage
+    }
+}
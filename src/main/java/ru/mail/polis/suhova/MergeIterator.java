@@ -0,0 +1,348 @@
+package ru.mail.polis.suhova;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Merges sorted cells of several tables into live cells, one per key.
+ * Sources are kept in a binary heap by their current cell: key in the order of iteration,
+ * then version descending, then source order, so all versions of a key come out one after another,
+ * newest first.
+ * The newest version wins, but merge operands are combined with the older versions
+ * down to the first value, tombstone or expired value.
+ * Versions older than a range tombstone containing the key are deleted.
+ * In ascending order, sources that are {@link CellCursor}s having only versions older than a range tombstone
+ * seek past it at once instead of going through the deleted cells.
+ */
+final class MergeIterator implements Iterator<Cell> {
+    private final Source[] sources;
+    private final Source[] heap;
+    private final MergeOperator operator;
+    private final boolean descending;
+    private final List<RangeTombstone> rangeTombstones;
+    private PeekingIterator<RangeTombstone> pendingTombstones;
+    private ByteBuffer swept;
+    private long now;
+    private final List<RangeTombstone> activeTombstones = new ArrayList<>();
+    private final List<Value> versions = new ArrayList<>();
+    private int size;
+    private Cell next;
+
+    /**
+     * Creates merge of the tables.
+     *
+     * @param sources         - cells of the tables, newer tables first
+     * @param descending      - whether the sources go in descending order of keys
+     * @param rangeTombstones - range tombstones of all the tables
+     * @param operator        - operator for merge operands, if set
+     * @param now             - time to check expiration against
+     */
+    MergeIterator(
+            @NotNull final List<? extends Iterator<Cell>> sources,
+            final boolean descending,
+            @NotNull final Collection<RangeTombstone> rangeTombstones,
+            @Nullable final MergeOperator operator,
+            final long now) {
+        this.sources = new Source[sources.size()];
+        this.heap = new Source[sources.size()];
+        this.operator = operator;
+        this.descending = descending;
+        this.rangeTombstones = new ArrayList<>(rangeTombstones);
+        if (descending) {
+            this.rangeTombstones.sort(Comparator.comparing(RangeTombstone::getTo).reversed());
+        } else {
+            this.rangeTombstones.sort(Comparator.comparing(RangeTombstone::getFrom));
+        }
+        for (int rank = 0; rank < sources.size(); rank++) {
+            this.sources[rank] = new Source(sources.get(rank), rank);
+        }
+        reset(now);
+    }
+
+    /**
+     * Starts the merge over from the current positions of the sources,
+     * e.g. after they have been moved to another key.
+     * If the sources have moved forward, the sweep of the range tombstones goes on from where it was,
+     * so a cursor seeking forward goes through the tombstones once in all.
+     *
+     * @param now - time to check expiration against
+     */
+    void reset(final long now) {
+        this.now = now;
+        Arrays.fill(heap, null);
+        size = 0;
+        for (final Source source : sources) {
+            if (source.advance()) {
+                heap[size] = source;
+                siftUp(size++);
+            }
+        }
+        if (pendingTombstones == null || (size > 0 && isBehind(heap[0].current.key()))) {
+            pendingTombstones = Iterators.peekingIterator(rangeTombstones.iterator());
+            activeTombstones.clear();
+            swept = null;
+        }
+        this.next = advance();
+    }
+
+    /**
+     * Whether the key comes before the one the range tombstones are swept to in the order of iteration.
+     */
+    private boolean isBehind(@NotNull final ByteBuffer key) {
+        if (swept == null) {
+            return false;
+        }
+        final int cmp = key.compareTo(swept);
+        return descending ? cmp > 0 : cmp < 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Cell next() {
+        if (next == null) {
+            throw new NoSuchElementException("No more cells");
+        }
+        final Cell result = next;
+        next = advance();
+        return result;
+    }
+
+    private Cell advance() {
+        while (size > 0) {
+            if (!descending) {
+                skipDeleted();
+                if (size == 0) {
+                    break;
+                }
+            }
+            final Cell cell = takeTop();
+            if (cell != null) {
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes all the versions of the next key and resolves them.
+     *
+     * @return live cell of the key or null if the key is deleted
+     */
+    private Cell takeTop() {
+        final Cell first = heap[0].current;
+        final ByteBuffer key = first.key();
+        versions.clear();
+        while (size > 0 && heap[0].current.key().equals(key)) {
+            final Source top = heap[0];
+            versions.add(top.current.getValue());
+            if (top.advance()) {
+                siftDown(0);
+            } else {
+                heap[0] = heap[--size];
+                heap[size] = null;
+                siftDown(0);
+            }
+        }
+        final long deletedBefore = deletedBefore(key);
+        final Value newest = versions.get(0);
+        if (!isAlive(newest, deletedBefore)) {
+            return null;
+        }
+        return newest.isOperand() ? resolve(key, deletedBefore) : first;
+    }
+
+    /**
+     * Moves the sources past the range tombstones containing the next key, if the tombstones are newer
+     * than all the cells of the sources, until the next key is not in such a tombstone.
+     */
+    private void skipDeleted() {
+        boolean moved = true;
+        while (moved && size > 0) {
+            moved = false;
+            deletedBefore(heap[0].current.key());
+            for (final RangeTombstone tombstone : activeTombstones) {
+                for (int i = 0; i < size; i++) {
+                    final Source source = heap[i];
+                    if (source.isSkippable(tombstone)) {
+                        source.seek(tombstone.getTo());
+                        moved = true;
+                    }
+                }
+            }
+            if (moved) {
+                heapify();
+            }
+        }
+    }
+
+    private void heapify() {
+        int alive = 0;
+        for (int i = 0; i < size; i++) {
+            if (heap[i].current != null) {
+                heap[alive++] = heap[i];
+            }
+        }
+        Arrays.fill(heap, alive, size, null);
+        size = alive;
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    private boolean isAlive(@NotNull final Value value, final long deletedBefore) {
+        return value.getVersion() >= deletedBefore && !value.isTombstone() && !value.isExpired(now);
+    }
+
+    private Cell resolve(@NotNull final ByteBuffer key, final long deletedBefore) {
+        if (operator == null) {
+            throw new IllegalStateException("Merge operand found but no merge operator is set");
+        }
+        int operands = 1;
+        Value base = null;
+        while (operands < versions.size()) {
+            final Value value = versions.get(operands);
+            if (value.isOperand() && value.getVersion() >= deletedBefore) {
+                operands++;
+                continue;
+            }
+            if (isAlive(value, deletedBefore)) {
+                base = value;
+            }
+            break;
+        }
+        int i = operands - 1;
+        ByteBuffer merged;
+        if (base == null) {
+            merged = versions.get(i--).getData();
+        } else {
+            merged = base.getData();
+        }
+        while (i >= 0) {
+            merged = operator.merge(merged.asReadOnlyBuffer(), versions.get(i--).getData().asReadOnlyBuffer());
+        }
+        final long version = versions.get(0).getVersion();
+        return new Cell(key, new Value(merged, version, base == null ? Value.NEVER : base.getExpire()));
+    }
+
+    /**
+     * The newest version of the range tombstones containing the key.
+     * Keys come in order, so the tombstones are swept along with them:
+     * a tombstone becomes active once its first key in the order of iteration is reached
+     * and is dropped after the last one.
+     */
+    private long deletedBefore(@NotNull final ByteBuffer key) {
+        swept = key;
+        while (pendingTombstones.hasNext() && !isAhead(pendingTombstones.peek(), key)) {
+            activeTombstones.add(pendingTombstones.next());
+        }
+        long version = Long.MIN_VALUE;
+        final Iterator<RangeTombstone> active = activeTombstones.iterator();
+        while (active.hasNext()) {
+            final RangeTombstone tombstone = active.next();
+            if (isPassed(tombstone, key)) {
+                active.remove();
+            } else {
+                version = Math.max(version, tombstone.getVersion());
+            }
+        }
+        return version;
+    }
+
+    private boolean isAhead(@NotNull final RangeTombstone tombstone, @NotNull final ByteBuffer key) {
+        return descending ? tombstone.isBefore(key) : tombstone.isAfter(key);
+    }
+
+    private boolean isPassed(@NotNull final RangeTombstone tombstone, @NotNull final ByteBuffer key) {
+        return descending ? tombstone.isAfter(key) : tombstone.isBefore(key);
+    }
+
+    private void siftUp(final int index) {
+        int child = index;
+        final Source source = heap[child];
+        while (child > 0) {
+            final int parent = (child - 1) / 2;
+            if (compare(heap[parent], source) <= 0) {
+                break;
+            }
+            heap[child] = heap[parent];
+            child = parent;
+        }
+        heap[child] = source;
+    }
+
+    private void siftDown(final int index) {
+        if (size == 0) {
+            return;
+        }
+        int parent = index;
+        final Source source = heap[parent];
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && compare(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (compare(source, heap[child]) <= 0) {
+                break;
+            }
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        heap[parent] = source;
+    }
+
+    private int compare(@NotNull final Source left, @NotNull final Source right) {
+        final int cmp = left.current.key().compareTo(right.current.key());
+        if (cmp != 0) {
+            return descending ? -cmp : cmp;
+        }
+        final int byVersion = Long.compare(
+                right.current.getValue().getVersion(),
+                left.current.getValue().getVersion());
+        return byVersion == 0 ? Integer.compare(left.rank, right.rank) : byVersion;
+    }
+
+    private static final class Source {
+        private final Iterator<Cell> cells;
+        private final int rank;
+        private final long maxVersion;
+        private Cell current;
+
+        Source(@NotNull final Iterator<Cell> cells, final int rank) {
+            this.cells = cells;
+            this.rank = rank;
+            this.maxVersion = cells instanceof CellCursor ? ((CellCursor) cells).maxVersion() : Long.MAX_VALUE;
+        }
+
+        boolean isSkippable(@NotNull final RangeTombstone tombstone) {
+            return current != null && maxVersion < tombstone.getVersion() && tombstone.contains(current.key());
+        }
+
+        void seek(@NotNull final ByteBuffer key) {
+            ((CellCursor) cells).seek(key);
+            advance();
+        }
+
+        boolean advance() {
+            current = cells.hasNext() ? cells.next() : null;
+            return current != null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Associative operation behind {@link ru.mail.polis.DAO#merge(ByteBuffer, ByteBuffer)}.
+ * Operands are stored as they come and combined lazily on reads and compaction,
+ * so merge(merge(a, b), c) must be equal to merge(a, merge(b, c)).
+ */
+@FunctionalInterface
+public interface MergeOperator {
+    /**
+     * Combines two values of the same key.
+     *
+     * @param older - existing value or an earlier operand
+     * @param newer - later operand
+     * @return combined value
+     */
+    @NotNull
+    ByteBuffer merge(@NotNull ByteBuffer older, @NotNull ByteBuffer newer);
+}
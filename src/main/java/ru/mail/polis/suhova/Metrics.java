@@ -0,0 +1,111 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.mail.polis.Histogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of named counters, gauges and histograms of a storage.
+ * Its {@link #snapshot()} is also available through JMX once the registry is registered there.
+ */
+public final class Metrics {
+    private static final Logger log = LoggerFactory.getLogger(Metrics.class);
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private volatile ObjectName objectName;
+
+    /**
+     * Counter of the name, created on first use.
+     */
+    @NotNull
+    public LongAdder counter(@NotNull final String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Sets the gauge of the name, its value is taken on every snapshot.
+     */
+    public void gauge(@NotNull final String name, @NotNull final LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Histogram of the name, created on first use. Latencies are recorded in nanoseconds.
+     */
+    @NotNull
+    public Histogram histogram(@NotNull final String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Current values of all the metrics by name. A histogram gives name.count, name.mean,
+     * name.p50, name.p95, name.p99, name.p999 and name.max.
+     */
+    @NotNull
+    public SortedMap<String, Number> snapshot() {
+        final SortedMap<String, Number> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> snapshot.put(name, gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> {
+            snapshot.put(name + ".count", histogram.getCount());
+            snapshot.put(name + ".mean", histogram.getMean());
+            snapshot.put(name + ".p50", histogram.getValueAtPercentile(50));
+            snapshot.put(name + ".p95", histogram.getValueAtPercentile(95));
+            snapshot.put(name + ".p99", histogram.getValueAtPercentile(99));
+            snapshot.put(name + ".p999", histogram.getValueAtPercentile(99.9));
+            snapshot.put(name + ".max", histogram.getMax());
+        });
+        return snapshot;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server. A failure is logged, as metrics are not worth failing for.
+     *
+     * @param name - object name of the MBean
+     */
+    void register(@NotNull final String name) {
+        try {
+            final ObjectName registered = new ObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), registered);
+            objectName = registered;
+        } catch (JMException e) {
+            log.warn("Can't register metrics as {}", name, e);
+        }
+    }
+
+    /**
+     * Name the metrics are registered under in JMX, if they are.
+     */
+    @Nullable
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    void unregister() {
+        final ObjectName registered = objectName;
+        if (registered == null) {
+            return;
+        }
+        objectName = null;
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(registered);
+        } catch (JMException e) {
+            log.warn("Can't unregister metrics {}", registered, e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.mail.polis.suhova;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background reads of the next blocks of the table scans, a pool of its own for every storage.
+ * Once a table is retired, e.g. compacted away, its queued reads are cancelled and the running ones
+ * are waited for, so no read touches the table after it is closed and deleted.
+ */
+final class Prefetcher implements Closeable {
+    private final ExecutorService executor;
+    private final Map<SSTable, Integer> running = new HashMap<>();
+    private final Set<SSTable> retired = Collections.newSetFromMap(new WeakHashMap<>());
+
+    /**
+     * Starts the pool.
+     *
+     * @param threads - how many blocks are read at a time
+     */
+    Prefetcher(final int threads) {
+        this.executor = Executors.newFixedThreadPool(
+                threads,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("sstable-prefetch-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    /**
+     * Reads the cells in the background.
+     *
+     * @return the cells to come or null if the table is retired or the pool is closed
+     */
+    @Nullable
+    synchronized Future<List<Cell>> submit(
+            @NotNull final SSTable table,
+            @NotNull final Callable<List<Cell>> read) {
+        if (retired.contains(table)) {
+            return null;
+        }
+        try {
+            return executor.submit(() -> run(table, read));
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private List<Cell> run(@NotNull final SSTable table, @NotNull final Callable<List<Cell>> read) throws Exception {
+        synchronized (this) {
+            if (retired.contains(table)) {
+                throw new CancellationException("Table " + table.getFile() + " is retired");
+            }
+            running.merge(table, 1, Integer::sum);
+        }
+        try {
+            return read.call();
+        } finally {
+            synchronized (this) {
+                running.computeIfPresent(table, (key, count) -> count == 1 ? null : count - 1);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Cancels the reads of the table and waits for the running ones to finish.
+     */
+    synchronized void retire(@NotNull final SSTable table) throws IOException {
+        retired.add(table);
+        try {
+            while (running.containsKey(table)) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the reads of " + table.getFile(), e);
+        }
+    }
+
+    /**
+     * Cancels all the reads and waits for the running ones to finish.
+     */
+    @Override
+    public void close() throws IOException {
+        for (final Runnable queued : executor.shutdownNow()) {
+            ((Future<?>) queued).cancel(false);
+        }
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the prefetcher", e);
+        }
+    }
+}
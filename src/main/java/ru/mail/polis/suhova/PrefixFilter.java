@@ -0,0 +1,94 @@
+package ru.mail.polis.suhova;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bloom filter over the first prefixLength bytes of the table keys.
+ * Tells for sure that the table has no key starting with a prefix, if the prefix is long enough.
+ */
+final class PrefixFilter {
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+    private final int prefixLength;
+    private final BloomFilter<byte[]> filter;
+
+    private PrefixFilter(final int prefixLength, @NotNull final BloomFilter<byte[]> filter) {
+        this.prefixLength = prefixLength;
+        this.filter = filter;
+    }
+
+    /**
+     * Whether there may be keys starting with the prefix.
+     * Prefixes shorter than the filtered length can't be checked and always may be there.
+     */
+    boolean mightContain(@NotNull final ByteBuffer prefix) {
+        if (prefix.remaining() < prefixLength) {
+            return true;
+        }
+        return filter.mightContain(bytes(prefix, prefixLength));
+    }
+
+    ByteBuffer serialize() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(prefixLength);
+            filter.writeTo(out);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    static PrefixFilter deserialize(@NotNull final byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            final int prefixLength = in.readInt();
+            return new PrefixFilter(prefixLength, BloomFilter.readFrom(in, Funnels.byteArrayFunnel()));
+        }
+    }
+
+    private static byte[] bytes(@NotNull final ByteBuffer buffer, final int length) {
+        final byte[] bytes = new byte[length];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Collects distinct prefixes of the keys added in ascending order.
+     */
+    static final class Builder {
+        private final int prefixLength;
+        private final List<byte[]> prefixes = new ArrayList<>();
+
+        Builder(final int prefixLength) {
+            this.prefixLength = prefixLength;
+        }
+
+        void add(@NotNull final ByteBuffer key) {
+            if (key.remaining() < prefixLength) {
+                return;
+            }
+            final byte[] prefix = bytes(key, prefixLength);
+            if (prefixes.isEmpty() || !Arrays.equals(prefixes.get(prefixes.size() - 1), prefix)) {
+                prefixes.add(prefix);
+            }
+        }
+
+        PrefixFilter build() {
+            final BloomFilter<byte[]> filter = BloomFilter.create(
+                    Funnels.byteArrayFunnel(),
+                    Math.max(prefixes.size(), 1),
+                    FALSE_POSITIVE_PROBABILITY);
+            prefixes.forEach(filter::put);
+            return new PrefixFilter(prefixLength, filter);
+        }
+    }
+}
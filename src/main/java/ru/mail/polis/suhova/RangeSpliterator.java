@@ -0,0 +1,119 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.mail.polis.Record;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Records of a key range, which splits on the index of the tables:
+ * the range is cut at the middle key of the table having the most cells in it.
+ * Each part merges the tables over its own subrange once it is traversed.
+ */
+final class RangeSpliterator implements Spliterator<Record> {
+    private static final int CHARACTERISTICS = ORDERED | SORTED | DISTINCT | NONNULL;
+    private final ByteBuffer to;
+    private final Collection<SSTable> tables;
+    private final BiFunction<ByteBuffer, ByteBuffer, Iterator<Record>> records;
+    private ByteBuffer from;
+    private Iterator<Record> iterator;
+    private long estimate = -1;
+
+    /**
+     * Creates records of the range.
+     *
+     * @param from    - first key (inclusive)
+     * @param to      - last key (exclusive, no bound if it is null)
+     * @param tables  - tables to split the range on
+     * @param records - records of a subrange
+     */
+    RangeSpliterator(
+            @NotNull final ByteBuffer from,
+            @Nullable final ByteBuffer to,
+            @NotNull final Collection<SSTable> tables,
+            @NotNull final BiFunction<ByteBuffer, ByteBuffer, Iterator<Record>> records) {
+        this.from = from;
+        this.to = to;
+        this.tables = tables;
+        this.records = records;
+    }
+
+    @Override
+    public boolean tryAdvance(@NotNull final Consumer<? super Record> action) {
+        final Iterator<Record> iter = iterator();
+        if (!iter.hasNext()) {
+            return false;
+        }
+        action.accept(iter.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(@NotNull final Consumer<? super Record> action) {
+        iterator().forEachRemaining(action);
+    }
+
+    private Iterator<Record> iterator() {
+        if (iterator == null) {
+            iterator = records.apply(from, to);
+        }
+        return iterator;
+    }
+
+    /**
+     * Gives away the lower half of the range, unless the traversal has already started.
+     */
+    @Override
+    public Spliterator<Record> trySplit() {
+        if (iterator != null) {
+            return null;
+        }
+        SSTable largest = null;
+        int largestCount = 0;
+        for (final SSTable table : tables) {
+            final int count = table.count(from, to);
+            if (count > largestCount) {
+                largest = table;
+                largestCount = count;
+            }
+        }
+        final ByteBuffer median = largest == null ? null : largest.medianKey(from, to);
+        if (median == null) {
+            return null;
+        }
+        final Spliterator<Record> prefix = new RangeSpliterator(from, median, tables, records);
+        from = median;
+        estimate = -1;
+        return prefix;
+    }
+
+    /**
+     * Cells of all the tables in the range, the same key in several tables is counted several times.
+     */
+    @Override
+    public long estimateSize() {
+        if (estimate < 0) {
+            estimate = tables.stream()
+                    .mapToLong(table -> table.count(from, to))
+                    .sum();
+        }
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    @Override
+    public Comparator<? super Record> getComparator() {
+        return null;
+    }
+}
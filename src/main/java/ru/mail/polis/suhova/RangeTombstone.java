@@ -0,0 +1,57 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Deletes every version older than its own one of the keys from "from" (inclusive) to "to" (exclusive).
+ */
+public class RangeTombstone {
+    private final ByteBuffer from;
+    private final ByteBuffer to;
+    private final long version;
+
+    /**
+     * Tombstone of a key range.
+     *
+     * @param from    - first key of the range
+     * @param to      - key after the range
+     * @param version - timestamp
+     */
+    public RangeTombstone(@NotNull final ByteBuffer from, @NotNull final ByteBuffer to, final long version) {
+        this.from = from;
+        this.to = to;
+        this.version = version;
+    }
+
+    public ByteBuffer getFrom() {
+        return from.asReadOnlyBuffer();
+    }
+
+    public ByteBuffer getTo() {
+        return to.asReadOnlyBuffer();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Whether the range starts after the key.
+     */
+    public boolean isAfter(@NotNull final ByteBuffer key) {
+        return from.compareTo(key) > 0;
+    }
+
+    /**
+     * Whether the range ends before or at the key.
+     */
+    public boolean isBefore(@NotNull final ByteBuffer key) {
+        return to.compareTo(key) <= 0;
+    }
+
+    public boolean contains(@NotNull final ByteBuffer key) {
+        return from.compareTo(key) <= 0 && key.compareTo(to) < 0;
+    }
+}
@@ -1,6 +1,7 @@
 package ru.mail.polis.suhova;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -8,128 +9,656 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
 
 public final class SSTable implements Table {
+    /**
+     * Key bounds are kept in memory for every table, so huge keys are cut to this length.
+     */
+    private static final int MAX_BOUND_SIZE = 64;
+    private static final byte TOMBSTONE = 1;
+    private static final byte EXPIRING = 2;
+    private static final byte OPERAND = 4;
+    private static final int FOOTER_SIZE = 8 * Integer.BYTES + Long.BYTES;
+    /**
+     * Scans read cells in blocks of about this size.
+     */
+    static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_BLOCK_CELLS = 1024;
+    /**
+     * Bytes read at a cell to get its key in one read.
+     */
+    private static final int KEY_READ_SIZE = 256;
+    /**
+     * Version of the file format, it changes whenever the format does.
+     */
+    static final int FORMAT_VERSION = 4;
+    /**
+     * Ends every table since format version 4, the earlier ones have no version in the file.
+     */
+    private static final int MAGIC = 0x53535442;
+    private final File file;
+    private final FileCache files;
+    private final ChecksumMode checksumMode;
+    private final Prefetcher prefetcher;
     private final int count;
-    private final int size;
-    private final FileChannel fileChannel;
+    private final int rangeTombstoneCount;
+    private final int operandCount;
+    private final ByteBuffer minKey;
+    private final ByteBuffer maxKey;
+    private final long maxVersion;
+    private volatile Contents contents;
+
+    /**
+     * Opens the table reading what is needed to know about it from the file.
+     *
+     * @param file         - file of the table
+     * @param files        - cache to open the file through
+     * @param checksumMode - when to verify the block checksums
+     * @param prefetcher   - pool to read the next blocks of scans with
+     */
+    SSTable(
+            @NotNull final File file,
+            @NotNull final FileCache files,
+            @NotNull final ChecksumMode checksumMode,
+            @NotNull final Prefetcher prefetcher) throws IOException {
+        this.file = file;
+        this.files = files;
+        this.checksumMode = checksumMode;
+        this.prefetcher = prefetcher;
+        this.contents = readContents();
+        this.count = contents.count;
+        this.operandCount = contents.operands;
+        this.maxVersion = contents.maxVersion;
+        this.rangeTombstoneCount = contents.rangeTombstones.size();
+        final List<ByteBuffer> lowerBounds = new ArrayList<>();
+        final List<ByteBuffer> upperBounds = new ArrayList<>();
+        if (count > 0) {
+            lowerBounds.add(getKeyPrefix(0, MAX_BOUND_SIZE));
+            upperBounds.add(getKeyPrefix(count - 1, MAX_BOUND_SIZE));
+        }
+        for (final RangeTombstone tombstone : contents.rangeTombstones) {
+            lowerBounds.add(prefix(tombstone.getFrom()));
+            upperBounds.add(prefix(tombstone.getTo()));
+        }
+        this.minKey = lowerBounds.isEmpty() ? ByteBuffer.allocate(0) : Collections.min(lowerBounds);
+        this.maxKey = upperBounds.isEmpty() ? ByteBuffer.allocate(0) : Collections.max(upperBounds);
+    }
+
+    /**
+     * Opens the table with the known metadata, the file is not even opened until the cells are needed.
+     *
+     * @param file         - file of the table
+     * @param meta         - metadata of the table
+     * @param files        - cache to open the file through
+     * @param checksumMode - when to verify the block checksums
+     * @param prefetcher   - pool to read the next blocks of scans with
+     */
+    SSTable(
+            @NotNull final File file,
+            @NotNull final TableMeta meta,
+            @NotNull final FileCache files,
+            @NotNull final ChecksumMode checksumMode,
+            @NotNull final Prefetcher prefetcher) {
+        this.file = file;
+        this.files = files;
+        this.checksumMode = checksumMode;
+        this.prefetcher = prefetcher;
+        this.count = meta.getCount();
+        this.rangeTombstoneCount = meta.getRangeTombstoneCount();
+        this.operandCount = meta.getOperandCount();
+        this.maxVersion = meta.getMaxVersion();
+        this.minKey = meta.getMinKey();
+        this.maxKey = meta.getMaxKey();
+    }
+
+    /**
+     * Reads the footer, range tombstones and prefix filter ahead of the first access
+     * and checks that the footer agrees with the metadata.
+     *
+     * @throws IOException if the table is corrupted
+     */
+    void load() throws IOException {
+        final Contents loaded;
+        try {
+            loaded = contents();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (loaded.count != count || loaded.operands != operandCount || loaded.maxVersion != maxVersion) {
+            throw new IOException("Table " + file + " doesn't match its metadata");
+        }
+    }
+
+    /**
+     * Reads the whole file checking every block against its checksum, whatever the checksum mode.
+     *
+     * @param stopped - tells to stop before the next block
+     * @throws ChecksumMismatchException if a block is corrupted
+     * @throws IOException               if the footer is corrupted or the file can't be read
+     */
+    void scrub(@NotNull final BooleanSupplier stopped) throws IOException {
+        load();
+        final BlockChecksums checksums = contents().checksums;
+        long position = 0;
+        while (position < checksums.size() && !stopped.getAsBoolean()) {
+            final long end = Math.min(position + BLOCK_SIZE, checksums.size());
+            final ByteBuffer blocks = ByteBuffer.allocate((int) (end - position));
+            readRaw(blocks, position);
+            checksums.check(blocks.rewind(), position, true, file);
+            position = end;
+        }
+    }
+
+    /**
+     * Checks the block checksums, then reads all the cells checking that they can be parsed,
+     * go in ascending order of keys and are not newer than the max version.
+     *
+     * @param stopped - tells to stop before the next block
+     * @throws IOException if the table is corrupted
+     */
+    void verify(@NotNull final BooleanSupplier stopped) throws IOException {
+        scrub(stopped);
+        ByteBuffer previous = null;
+        int position = 0;
+        while (position < count && !stopped.getAsBoolean()) {
+            final List<Cell> cells;
+            try {
+                cells = readBlock(position, count);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupted cells in " + file, e);
+            }
+            for (final Cell cell : cells) {
+                final boolean outOfOrder = previous != null && previous.compareTo(cell.key()) >= 0;
+                if (outOfOrder || cell.getValue().getVersion() > maxVersion) {
+                    throw new IOException("Cell out of order in " + file);
+                }
+                previous = cell.key();
+            }
+            position += cells.size();
+        }
+    }
+
+    /**
+     * Metadata to open the table with later.
+     */
+    TableMeta getMeta() {
+        return new TableMeta(count, rangeTombstoneCount, maxVersion, minKey, maxKey).withOperandCount(operandCount);
+    }
+
+    /**
+     * Whether the table has merge operands, which can't be read without a {@link MergeOperator}.
+     */
+    boolean hasOperands() {
+        return operandCount > 0;
+    }
+
+    private static ByteBuffer prefix(final ByteBuffer key) {
+        final ByteBuffer prefix = key.duplicate();
+        prefix.limit(prefix.position() + Math.min(prefix.remaining(), MAX_BOUND_SIZE));
+        return ByteBuffer.allocate(prefix.remaining()).put(prefix).rewind();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    private void read(final ByteBuffer buffer, final long position) throws IOException {
+        read(buffer, position, contents().checksums);
+    }
+
+    /**
+     * Reads the bytes, checking the blocks they are in if the checksum mode says so.
+     * The blocks are read whole then, so a small read costs a block read and its checksum:
+     * a lookup step reads its key in one read for that reason.
+     */
+    private void read(
+            final ByteBuffer buffer,
+            final long position,
+            final BlockChecksums checksums) throws IOException {
+        final int length = buffer.remaining();
+        if (!checksums.needsCheck(position, length)) {
+            readRaw(buffer, position);
+            return;
+        }
+        final long start = BlockChecksums.blockStart(position);
+        final ByteBuffer blocks = ByteBuffer.allocate((int) (checksums.blockEnd(position + length) - start));
+        readRaw(blocks, start);
+        checksums.check(blocks.rewind(), start, false, file);
+        blocks.limit((int) (position - start) + length).position((int) (position - start));
+        buffer.put(blocks);
+    }
+
+    private void readRaw(final ByteBuffer buffer, final long position) throws IOException {
+        try (FileCache.Handle handle = files.acquire(file)) {
+            handle.read(buffer, position);
+        }
+    }
+
+    private long fileSize() throws IOException {
+        try (FileCache.Handle handle = files.acquire(file)) {
+            return handle.size();
+        }
+    }
+
+    private Contents contents() {
+        Contents result = contents;
+        if (result == null) {
+            synchronized (this) {
+                result = contents;
+                if (result == null) {
+                    try {
+                        result = readContents();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    contents = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Contents readContents() throws IOException {
+        final ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        final int footerOffset = (int) fileSize() - footer.capacity();
+        if (footerOffset < 0) {
+            throw new IOException("Corrupted footer of " + file);
+        }
+        readRaw(footer, footerOffset);
+        if (footer.getInt(FOOTER_SIZE - Integer.BYTES) != MAGIC) {
+            throw new IOException("Unsupported format of " + file + ": written before format version 4"
+                    + " or not a table");
+        }
+        final int format = footer.getInt(FOOTER_SIZE - 3 * Integer.BYTES);
+        if (format != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + format + " of " + file);
+        }
+        final int tombstonesOffset = footer.rewind().getInt();
+        final int filterOffset = footer.getInt();
+        final int cells = footer.getInt();
+        final int operands = footer.getInt();
+        final long version = footer.getLong();
+        final int checksumsOffset = footer.getInt();
+        footer.getInt(); // Format version, checked above
+        final int footerChecksum = footer.getInt();
+        final boolean footerCorrupted = checksumMode != ChecksumMode.OFF
+                && BlockChecksums.checksum(footer.rewind().limit(FOOTER_SIZE - 2 * Integer.BYTES)) != footerChecksum;
+        if (footerCorrupted
+                || cells < 0
+                || operands < 0
+                || operands > cells
+                || tombstonesOffset < (long) cells * Integer.BYTES
+                || filterOffset < tombstonesOffset
+                || checksumsOffset < filterOffset
+                || footerOffset - checksumsOffset != BlockChecksums.blockCount(checksumsOffset) * Integer.BYTES) {
+            throw new IOException("Corrupted footer of " + file);
+        }
+        final ByteBuffer sums = ByteBuffer.allocate(footerOffset - checksumsOffset);
+        readRaw(sums, checksumsOffset);
+        final int[] checksums = new int[sums.capacity() / Integer.BYTES];
+        sums.rewind().asIntBuffer().get(checksums);
+        final Contents result = new Contents(
+                cells,
+                operands,
+                version,
+                tombstonesOffset - cells * Integer.BYTES,
+                new BlockChecksums(checksumMode, checksumsOffset, tombstonesOffset - cells * Integer.BYTES, checksums));
+        result.rangeTombstones = readRangeTombstones(tombstonesOffset, filterOffset, result.checksums);
+        result.prefixFilter = readPrefixFilter(filterOffset, checksumsOffset, result.checksums);
+        return result;
+    }
+
+    private List<RangeTombstone> readRangeTombstones(
+            final int from,
+            final int to,
+            final BlockChecksums checksums) throws IOException {
+        final List<RangeTombstone> tombstones = new ArrayList<>();
+        if (from == to) {
+            return tombstones;
+        }
+        final ByteBuffer block = ByteBuffer.allocate(to - from);
+        read(block, from, checksums);
+        block.rewind();
+        while (block.hasRemaining()) {
+            final ByteBuffer start = readBuffer(block);
+            final ByteBuffer end = readBuffer(block);
+            tombstones.add(new RangeTombstone(start, end, block.getLong()));
+        }
+        return tombstones;
+    }
 
-    SSTable(@NotNull final File file) throws IOException {
-        fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
-        final int fileSize = (int) fileChannel.size() - Integer.BYTES;
-        final ByteBuffer cellCount = ByteBuffer.allocate(Integer.BYTES);
-        fileChannel.read(cellCount, fileSize);
-        this.count = cellCount.rewind().getInt();
-        this.size = fileSize - count * Integer.BYTES;
+    private PrefixFilter readPrefixFilter(
+            final int from,
+            final int to,
+            final BlockChecksums checksums) throws IOException {
+        if (from == to) {
+            return null;
+        }
+        final ByteBuffer block = ByteBuffer.allocate(to - from);
+        read(block, from, checksums);
+        return PrefixFilter.deserialize(block.array());
+    }
+
+    private static ByteBuffer readBuffer(final ByteBuffer block) {
+        final int size = block.getInt();
+        final ByteBuffer buffer = block.duplicate();
+        buffer.limit(buffer.position() + size);
+        block.position(buffer.limit());
+        return buffer.slice();
     }
 
     /**
      * Writes a table to a file.
-     * keySize (integer)| key | version (long) | data
+     * keySize (integer)| key | version (long) | flags (byte) | [expire (long)] | [data]
      * offsets
-     * n
+     * fromSize (integer) | from | toSize (integer) | to | version (long) - for every range tombstone
+     * [prefix filter]
+     * CRC32C (integer) - for every block of {@link BlockChecksums#BLOCK_SIZE} bytes of everything above
+     * range tombstones offset (integer) | prefix filter offset (integer) | n (integer) | operands (integer)
+     * | max version (long) | checksums offset (integer) | format version (integer)
+     * | CRC32C of the footer before it (integer) | magic (integer)
+     * Expire is present only for the EXPIRING flag, data is absent for the TOMBSTONE flag,
+     * the OPERAND flag marks data of a merge operand.
+     * The prefix filter is written only for a positive prefixLength.
+     * Operands is the number of cells with the OPERAND flag, the max version is the newest version of the cells.
+     * Stops taking cells from the iterator once the data part reaches sizeLimit bytes,
+     * so the rest of the cells can go to the next table.
+     * The table is forced to the disk before it is returned, so it may be renamed and recorded right away.
+     *
+     * @return size of the cells, everything after them is the index of the table
      */
-    public static void write(final File fileTable, final Iterator<Cell> iter) throws IOException {
+    public static int write(
+            final File fileTable,
+            final Iterator<Cell> iter,
+            final long sizeLimit,
+            final Collection<RangeTombstone> rangeTombstones,
+            final int prefixLength) throws IOException {
         try (FileChannel file = new FileOutputStream(fileTable).getChannel()) {
+            final BlockChecksums.Writer out = new BlockChecksums.Writer(file);
+            final PrefixFilter.Builder filter = prefixLength > 0 ? new PrefixFilter.Builder(prefixLength) : null;
             final List<Integer> offsets = new ArrayList<>();
             int offset = 0;
-            while (iter.hasNext()) {
+            int operands = 0;
+            long maxVersion = Long.MIN_VALUE;
+            while (iter.hasNext() && offset < sizeLimit) {
                 final Cell cell = iter.next();
-                final ByteBuffer key = cell.getKey();
                 offsets.add(offset);
-                offset += key.remaining() + Long.BYTES + Integer.BYTES;
-                file.write(ByteBuffer.allocate(Integer.BYTES)
-                        .putInt(key.remaining())
-                        .rewind());
-                file.write(key);
-                if (cell.getValue().isTombstone()) {
-                    file.write(ByteBuffer.allocate(Long.BYTES)
-                            .putLong(-cell.getValue().getVersion())
-                            .rewind());
-                } else {
-                    file.write(ByteBuffer.allocate(Long.BYTES)
-                            .putLong(cell.getValue().getVersion())
-                            .rewind());
-                    final ByteBuffer data = cell.getValue().getData();
-                    offset += data.remaining();
-                    file.write(data);
+                maxVersion = Math.max(maxVersion, cell.getValue().getVersion());
+                if (cell.getValue().isOperand()) {
+                    operands++;
+                }
+                offset += writeCell(out, cell);
+                if (filter != null) {
+                    filter.add(cell.key());
                 }
             }
             final int count = offsets.size();
             for (final Integer integer : offsets) {
-                file.write(ByteBuffer.allocate(Integer.BYTES)
+                out.write(ByteBuffer.allocate(Integer.BYTES)
                         .putInt(integer)
                         .rewind());
             }
-            file.write(ByteBuffer.allocate(Integer.BYTES)
+            final int tombstonesOffset = offset + count * Integer.BYTES;
+            int filterOffset = tombstonesOffset;
+            for (final RangeTombstone tombstone : rangeTombstones) {
+                filterOffset += writeRangeTombstone(out, tombstone);
+            }
+            if (filter != null) {
+                out.write(filter.build().serialize());
+            }
+            final int checksumsOffset = (int) out.position();
+            final int[] checksums = out.finish();
+            final ByteBuffer sums = ByteBuffer.allocate(checksums.length * Integer.BYTES);
+            sums.asIntBuffer().put(checksums);
+            file.write(sums);
+            final ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE)
+                    .putInt(tombstonesOffset)
+                    .putInt(filterOffset)
                     .putInt(count)
-                    .rewind());
+                    .putInt(operands)
+                    .putLong(maxVersion)
+                    .putInt(checksumsOffset)
+                    .putInt(FORMAT_VERSION);
+            footer.putInt(BlockChecksums.checksum(footer.duplicate().flip()));
+            file.write(footer.putInt(MAGIC).rewind());
+            file.force(true);
+            return offset;
         }
     }
 
-    private Cell getCell(final int num) {
+    private static int writeCell(final BlockChecksums.Writer file, final Cell cell) throws IOException {
+        final ByteBuffer key = cell.getKey();
+        final Value value = cell.getValue();
+        int size = key.remaining() + Integer.BYTES;
+        file.write(ByteBuffer.allocate(Integer.BYTES)
+                .putInt(key.remaining())
+                .rewind());
+        file.write(key);
+        final ByteBuffer meta = ByteBuffer.allocate(
+                Long.BYTES + Byte.BYTES + (value.isExpiring() ? Long.BYTES : 0));
+        meta.putLong(value.getVersion()).put(flags(value));
+        if (value.isExpiring()) {
+            meta.putLong(value.getExpire());
+        }
+        size += meta.capacity();
+        file.write(meta.rewind());
+        if (!value.isTombstone()) {
+            final ByteBuffer data = value.getData().duplicate();
+            size += data.remaining();
+            file.write(data);
+        }
+        return size;
+    }
+
+    private static int writeRangeTombstone(
+            final BlockChecksums.Writer file,
+            final RangeTombstone tombstone) throws IOException {
+        final ByteBuffer from = tombstone.getFrom();
+        final ByteBuffer to = tombstone.getTo();
+        final int size = 2 * Integer.BYTES + from.remaining() + to.remaining() + Long.BYTES;
+        file.write(ByteBuffer.allocate(Integer.BYTES).putInt(from.remaining()).rewind());
+        file.write(from);
+        file.write(ByteBuffer.allocate(Integer.BYTES).putInt(to.remaining()).rewind());
+        file.write(to);
+        file.write(ByteBuffer.allocate(Long.BYTES).putLong(tombstone.getVersion()).rewind());
+        return size;
+    }
+
+    private static byte flags(final Value value) {
+        byte flags = 0;
+        if (value.isTombstone()) {
+            flags |= TOMBSTONE;
+        }
+        if (value.isExpiring()) {
+            flags |= EXPIRING;
+        }
+        if (value.isOperand()) {
+            flags |= OPERAND;
+        }
+        return flags;
+    }
+
+    @NotNull
+    @Override
+    public Collection<RangeTombstone> getRangeTombstones() {
+        return rangeTombstoneCount == 0 ? Collections.emptyList() : contents().rangeTombstones;
+    }
+
+    /**
+     * The newest version of the table cells, range tombstones aside.
+     */
+    public long getMaxVersion() {
+        return maxVersion;
+    }
+
+    /**
+     * Lower bound of the table keys and its range tombstones:
+     * a prefix of the smallest key (empty for an empty table).
+     */
+    public ByteBuffer getMinKey() {
+        return minKey.asReadOnlyBuffer();
+    }
+
+    /**
+     * Upper bound of the table keys and its range tombstones:
+     * a prefix of the largest key (empty for an empty table).
+     * No key of the table is greater than it after being cut to the same length.
+     */
+    public ByteBuffer getMaxKey() {
+        return maxKey.asReadOnlyBuffer();
+    }
+
+    Cell getCell(final int num) {
         try {
-            int offset = getOffset(num);
-            final ByteBuffer keySizeBB = ByteBuffer.allocate(Integer.BYTES);
-            fileChannel.read(keySizeBB, offset);
-            offset += Integer.BYTES;
-            final int keySize = keySizeBB.rewind().getInt();
-            final ByteBuffer key = ByteBuffer.allocate(keySize);
-            fileChannel.read(key, offset);
-            offset += keySize;
-            final ByteBuffer versionBB = ByteBuffer.allocate(Long.BYTES);
-            fileChannel.read(versionBB, offset);
-            final long version = versionBB.rewind().getLong();
-            if (version < 0) {
-                return new Cell(key.rewind(), Value.tombstone(-version));
-            } else {
-                offset += Long.BYTES;
-                final int dataSize;
-                if (num == this.count - 1) {
-                    dataSize = this.size - offset;
-                } else {
-                    dataSize = getOffset(num + 1) - offset;
-                }
-                final ByteBuffer data = ByteBuffer.allocate(dataSize);
-                fileChannel.read(data, offset);
-                return new Cell(key.rewind(), new Value(data.rewind(), version));
-            }
+            final int offset = getOffset(num);
+            final int end = num == count - 1 ? contents().size : getOffset(num + 1);
+            final ByteBuffer cell = ByteBuffer.allocate(end - offset);
+            read(cell, offset);
+            return parseCell(cell.rewind());
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
+    /**
+     * Reads consecutive cells starting at "from" in one go: as many as fit into {@link #BLOCK_SIZE} bytes,
+     * but at least one and not further than "end" (exclusive).
+     */
+    List<Cell> readBlock(final int from, final int end) throws IOException {
+        final int last = Math.min(end, from + MAX_BLOCK_CELLS);
+        final int[] bounds = new int[last - from + 1];
+        final int known = Math.min(last + 1, count) - from;
+        final int size = contents().size;
+        final ByteBuffer offsets = ByteBuffer.allocate(known * Integer.BYTES);
+        read(offsets, size + from * Integer.BYTES);
+        offsets.rewind().asIntBuffer().get(bounds, 0, known);
+        if (known < bounds.length) {
+            bounds[known] = size;
+        }
+        int cells = 1;
+        while (cells < bounds.length - 1 && bounds[cells + 1] - bounds[0] <= BLOCK_SIZE) {
+            cells++;
+        }
+        final ByteBuffer block = ByteBuffer.allocate(bounds[cells] - bounds[0]);
+        read(block, bounds[0]);
+        final List<Cell> result = new ArrayList<>(cells);
+        for (int i = 0; i < cells; i++) {
+            final ByteBuffer cell = block.duplicate();
+            cell.limit(bounds[i + 1] - bounds[0]).position(bounds[i] - bounds[0]);
+            result.add(parseCell(cell));
+        }
+        return result;
+    }
+
+    /**
+     * Reads a block like {@link #readBlock(int, int)} does in the background.
+     *
+     * @return the cells to come or null if the table is retired
+     */
+    @Nullable
+    Future<List<Cell>> prefetch(final int from, final int end) {
+        return prefetcher.submit(this, () -> readBlock(from, end));
+    }
+
+    private static Cell parseCell(final ByteBuffer cell) {
+        final ByteBuffer key = readBuffer(cell);
+        final long version = cell.getLong();
+        final byte flags = cell.get();
+        final long expire = (flags & EXPIRING) == 0 ? Value.NEVER : cell.getLong();
+        if ((flags & TOMBSTONE) != 0) {
+            return new Cell(key, Value.tombstone(version));
+        }
+        final ByteBuffer data = cell.slice();
+        if ((flags & OPERAND) != 0) {
+            return new Cell(key, Value.operand(data, version));
+        }
+        return new Cell(key, new Value(data, version, expire));
+    }
+
     private ByteBuffer getKey(final int num) throws IOException {
-        final ByteBuffer keySizeBB = ByteBuffer.allocate(Integer.BYTES);
+        return getKeyPrefix(num, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads the key size along with the key, if it is not longer than {@link #KEY_READ_SIZE}.
+     */
+    private ByteBuffer getKeyPrefix(final int num, final int limit) throws IOException {
         final int offset = getOffset(num);
-        fileChannel.read(keySizeBB, offset);
-        final int keySize = keySizeBB.rewind().getInt();
+        final ByteBuffer head = ByteBuffer.allocate(Math.min(KEY_READ_SIZE, contents().size - offset));
+        read(head, offset);
+        final int keySize = Math.min(head.rewind().getInt(), limit);
+        if (keySize <= head.remaining()) {
+            return head.limit(Integer.BYTES + keySize).slice();
+        }
         final ByteBuffer key = ByteBuffer.allocate(keySize);
-        fileChannel.read(key, offset + Integer.BYTES);
+        read(key, offset + Integer.BYTES);
         return key.rewind();
     }
 
     private int getOffset(final int num) throws IOException {
         final ByteBuffer offsetBB = ByteBuffer.allocate(Integer.BYTES);
-        fileChannel.read(offsetBB, size + num * Integer.BYTES);
+        read(offsetBB, contents().size + num * Integer.BYTES);
         return offsetBB.rewind().getInt();
     }
 
     private int getKeyPosition(final ByteBuffer key) {
-        int low = 0;
-        int high = count - 1;
+        return getKeyPosition(key, 0, count - 1);
+    }
+
+    /**
+     * Position of the first key greater than or equal to the given one, searched starting from the hint.
+     * The key is found by galloping away from the hint in its direction: positions hint + 1, 2, 4...
+     * are checked until the key is passed, then the last step is searched through,
+     * so a nearby key costs few reads.
+     */
+    int getKeyPosition(final ByteBuffer key, final int hint) {
+        if (count == 0) {
+            return 0;
+        }
+        final int start = Math.min(hint, count - 1);
+        int step = 1;
+        if (compareKey(start, key) >= 0) {
+            int high = start;
+            int low = start - 1;
+            while (low >= 0 && compareKey(low, key) >= 0) {
+                high = low;
+                step *= 2;
+                low = start - step;
+            }
+            return getKeyPosition(key, Math.max(low, 0), high);
+        }
+        int low = start + 1;
+        int high = low;
+        while (high < count && compareKey(high, key) < 0) {
+            low = high + 1;
+            step *= 2;
+            high = start + step;
+        }
+        return getKeyPosition(key, low, Math.min(high, count) - 1);
+    }
+
+    private int compareKey(final int num, final ByteBuffer key) {
+        try {
+            return getKey(num).compareTo(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int getKeyPosition(final ByteBuffer key, final int from, final int to) {
+        int low = from;
+        int high = to;
         while (low <= high) {
             final int mid = low + (high - low) / 2;
-            int cmp;
-            try {
-                cmp = getKey(mid).compareTo(key);
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
+            final int cmp = compareKey(mid, key);
             if (cmp < 0) {
                 low = mid + 1;
             } else if (cmp > 0) {
@@ -141,21 +670,96 @@ public final class SSTable implements Table {
         return low;
     }
 
+    /**
+     * Whether the table may have cells or range tombstones from "from" (inclusive)
+     * until "to" (exclusive, no bound if it is null), judging by the key bounds.
+     */
+    public boolean overlaps(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        if (count == 0 && rangeTombstoneCount == 0) {
+            return false;
+        }
+        if (to != null && to.compareTo(minKey) <= 0) {
+            return false;
+        }
+        final ByteBuffer fromPrefix = from.duplicate();
+        fromPrefix.limit(fromPrefix.position() + Math.min(fromPrefix.remaining(), maxKey.remaining()));
+        return fromPrefix.compareTo(maxKey) <= 0;
+    }
+
+    /**
+     * Number of cells from "from" (inclusive) until "to" (exclusive, no bound if it is null).
+     */
+    public int count(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        final int end = to == null ? count : getKeyPosition(to);
+        return Math.max(end - getKeyPosition(from), 0);
+    }
+
+    /**
+     * Key of the middle cell from "from" (inclusive) until "to" (exclusive, no bound if it is null),
+     * which splits the range into two halves of the table.
+     *
+     * @return the key or null if there are less than two cells in the range
+     */
+    @Nullable
+    public ByteBuffer medianKey(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        final int start = getKeyPosition(from);
+        final int end = to == null ? count : getKeyPosition(to);
+        if (end - start < 2) {
+            return null;
+        }
+        try {
+            return getKey(start + (end - start) / 2);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Whether the table may have a cell of the key, judging by the key bounds and the prefix filter, if any.
+     */
+    public boolean mightContain(@NotNull final ByteBuffer key) {
+        return count > 0 && key.compareTo(minKey) >= 0 && overlaps(key, null) && mightContainPrefix(key);
+    }
+
+    /**
+     * Whether the table may have keys starting with the prefix, judging by the prefix filter, if any.
+     */
+    public boolean mightContainPrefix(@NotNull final ByteBuffer prefix) {
+        final PrefixFilter filter = contents().prefixFilter;
+        return filter == null || filter.mightContain(prefix);
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Cell> iterator(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        final int end = to == null ? count : getKeyPosition(to);
+        return new ScanIterator(this, getKeyPosition(from), end);
+    }
+
+    @NotNull
+    @Override
+    public CellCursor cursor() {
+        return new ScanIterator(this, 0, count);
+    }
+
     @NotNull
     @Override
-    public Iterator<Cell> iterator(@NotNull final ByteBuffer from) {
+    public Iterator<Cell> descendingIterator(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        final int start = getKeyPosition(from);
         return new Iterator<>() {
-            int position = getKeyPosition(from);
+            int position = (to == null ? count : getKeyPosition(to)) - 1;
 
             @Override
             public boolean hasNext() {
-                return position < count;
+                return position >= start;
             }
 
             @Override
             public Cell next() {
-                assert hasNext();
-                return getCell(position++);
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more cells");
+                }
+                return getCell(position--);
             }
         };
     }
@@ -166,21 +770,71 @@ public final class SSTable implements Table {
     }
 
     @Override
-    public void remove(@NotNull final ByteBuffer key) {
+    public void upsert(@NotNull final ByteBuffer key, @NotNull final ByteBuffer value, final long expire) {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    public long sizeInBytes() {
-        return (long) size + (count + 1) * Integer.BYTES;
+    public void merge(
+            @NotNull final ByteBuffer key,
+            @NotNull final ByteBuffer operand,
+            @NotNull final MergeOperator operator) {
+        throw new UnsupportedOperationException();
     }
 
     @Override
-    public void close() {
+    public void remove(@NotNull final ByteBuffer key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long sizeInBytes() {
         try {
-            fileChannel.close();
+            return fileSize();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
+
+    /**
+     * Closes the file once the reads in progress are over, the table isn't read after that.
+     */
+    void retire() throws IOException {
+        prefetcher.retire(this);
+        close();
+    }
+
+    @Override
+    public void close() {
+        files.invalidate(file);
+    }
+
+    /**
+     * What is read from the file once the table is used.
+     */
+    private static final class Contents {
+        private final int count;
+        private final int operands;
+        private final long maxVersion;
+        private final int size;
+        private final BlockChecksums checksums;
+        /**
+         * Read through the checksums, so set right after they are, before the contents are published.
+         */
+        private List<RangeTombstone> rangeTombstones;
+        private PrefixFilter prefixFilter;
+
+        Contents(
+                final int count,
+                final int operands,
+                final long maxVersion,
+                final int size,
+                @NotNull final BlockChecksums checksums) {
+            this.count = count;
+            this.operands = operands;
+            this.maxVersion = maxVersion;
+            this.size = size;
+            this.checksums = checksums;
+        }
+    }
 }
@@ -0,0 +1,109 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Ascending iterator over cells of an {@link SSTable}.
+ * The first few cells are read one by one, which is enough for point lookups.
+ * Once the access turns out to be a scan, cells are read in blocks
+ * and the next block is prefetched in the background while the current one is consumed,
+ * unless the table is retired.
+ * Seeking starts over with single cells.
+ */
+final class ScanIterator implements CellCursor {
+    /**
+     * Cells read one by one before switching to blocks.
+     */
+    private static final int POINT_READS = 4;
+    private final SSTable table;
+    private final int end;
+    private int position;
+    private int pointReads;
+    private Iterator<Cell> block = Collections.emptyIterator();
+    private Future<List<Cell>> prefetched;
+
+    /**
+     * Creates iterator over cells from "position" (inclusive) until "end" (exclusive).
+     */
+    ScanIterator(@NotNull final SSTable table, final int position, final int end) {
+        this.table = table;
+        this.position = position;
+        this.end = end;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < end;
+    }
+
+    @Override
+    public Cell next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more cells");
+        }
+        if (!block.hasNext()) {
+            if (pointReads < POINT_READS) {
+                pointReads++;
+                return table.getCell(position++);
+            }
+            final List<Cell> cells = prefetched == null ? readBlock(position) : await(prefetched);
+            final int next = position + cells.size();
+            prefetched = next < end ? table.prefetch(next, end) : null;
+            block = cells.iterator();
+        }
+        position++;
+        return block.next();
+    }
+
+    @Override
+    public void seek(@NotNull final ByteBuffer key) {
+        position = table.getKeyPosition(key, position);
+        pointReads = 0;
+        block = Collections.emptyIterator();
+        if (prefetched != null) {
+            prefetched.cancel(false);
+            prefetched = null;
+        }
+    }
+
+    @Override
+    public long maxVersion() {
+        return table.getMaxVersion();
+    }
+
+    private List<Cell> readBlock(final int from) {
+        try {
+            return table.readBlock(from, end);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Cell> await(@NotNull final Future<List<Cell>> block) {
+        try {
+            return block.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading a block", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Failed to read a block", cause);
+        }
+    }
+}
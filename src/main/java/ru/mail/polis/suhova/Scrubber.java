@@ -0,0 +1,110 @@
+package ru.mail.polis.suhova;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks all the blocks of the tables against their checksums on a background thread, round after round,
+ * so corruption of data that is rarely read is found too.
+ */
+final class Scrubber {
+    private static final Logger log = LoggerFactory.getLogger(Scrubber.class);
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?> rounds;
+    private final Set<File> corrupted = ConcurrentHashMap.newKeySet();
+    private volatile List<SSTable> tables = Collections.emptyList();
+    private volatile boolean stopped;
+
+    private Scrubber(final ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Starts scrubbing with the pause between the rounds.
+     *
+     * @param interval - milliseconds between the rounds, no scrubbing if not positive
+     */
+    static Scrubber start(final long interval) {
+        if (interval <= 0) {
+            return new Scrubber(null);
+        }
+        final Scrubber scrubber = new Scrubber(Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("sstable-scrubber-%d")
+                        .setDaemon(true)
+                        .build()));
+        scrubber.rounds = scrubber.executor.scheduleWithFixedDelay(
+                scrubber::round, interval, interval, TimeUnit.MILLISECONDS);
+        return scrubber;
+    }
+
+    /**
+     * Sets the live tables to check from the next round on.
+     */
+    void setTables(@NotNull final Collection<SSTable> tables) {
+        this.tables = List.copyOf(tables);
+    }
+
+    /**
+     * Scrubs the tables, a failure of the round is logged so that it doesn't cancel the next ones.
+     */
+    private void round() {
+        try {
+            scrub();
+        } catch (RuntimeException e) {
+            log.error("Scrubbing round failed", e);
+        }
+    }
+
+    private void scrub() {
+        for (final SSTable table : tables) {
+            if (stopped) {
+                return;
+            }
+            try {
+                table.scrub(() -> stopped);
+            } catch (ChecksumMismatchException e) {
+                corrupted.add(table.getFile());
+                log.error("Corrupted table {}", table.getFile(), e);
+            } catch (IOException | RuntimeException e) {
+                if (tables.contains(table)) {
+                    corrupted.add(table.getFile());
+                    log.error("Can't scrub table {}", table.getFile(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Files of the tables found corrupted so far.
+     */
+    Set<File> getCorrupted() {
+        return Collections.unmodifiableSet(corrupted);
+    }
+
+    /**
+     * Stops scrubbing before the next block.
+     * Reads in progress are not interrupted, as an interrupt would close the file for all the readers.
+     */
+    void stop() {
+        stopped = true;
+        if (executor != null) {
+            rounds.cancel(false);
+            executor.shutdown();
+        }
+    }
+}
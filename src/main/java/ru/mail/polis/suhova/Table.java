@@ -1,17 +1,50 @@
 package ru.mail.polis.suhova;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Iterator;
 
 public interface Table {
     @NotNull
-    Iterator<Cell> iterator(@NotNull ByteBuffer from);
+    default Iterator<Cell> iterator(@NotNull ByteBuffer from) {
+        return iterator(from, null);
+    }
+
+    /**
+     * Cells with keys from "from" (inclusive) until "to" (exclusive, no bound if it is null).
+     */
+    @NotNull
+    Iterator<Cell> iterator(@NotNull ByteBuffer from, @Nullable ByteBuffer to);
+
+    /**
+     * Cells with keys from "from" (inclusive) until "to" (exclusive, no bound if it is null)
+     * in descending order of keys.
+     */
+    @NotNull
+    Iterator<Cell> descendingIterator(@NotNull ByteBuffer from, @Nullable ByteBuffer to);
+
+    /**
+     * Cursor over all the cells of the table, positioned at the first one.
+     */
+    @NotNull
+    CellCursor cursor();
+
+    /**
+     * Range tombstones of the table, they apply to the cells of older tables too.
+     */
+    @NotNull
+    Collection<RangeTombstone> getRangeTombstones();
 
     void upsert(@NotNull ByteBuffer key, @NotNull ByteBuffer value);
 
+    void upsert(@NotNull ByteBuffer key, @NotNull ByteBuffer value, long expire);
+
+    void merge(@NotNull ByteBuffer key, @NotNull ByteBuffer operand, @NotNull MergeOperator operator);
+
     void remove(@NotNull ByteBuffer key) throws IOException;
 
     long sizeInBytes();
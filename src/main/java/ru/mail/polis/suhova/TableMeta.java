@@ -0,0 +1,126 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * What is known about an {@link SSTable} without reading it: the format, the counts, the versions,
+ * the key bounds and the directory. It is kept in the {@link Manifest}, so tables can be opened lazily.
+ */
+final class TableMeta {
+    /**
+     * Directory of a table recorded before the directories were.
+     */
+    static final int NO_DIRECTORY = -1;
+    private final int count;
+    private final int rangeTombstoneCount;
+    private final long maxVersion;
+    private final ByteBuffer minKey;
+    private final ByteBuffer maxKey;
+    private int operandCount;
+    private int directory = NO_DIRECTORY;
+
+    TableMeta(
+            final int count,
+            final int rangeTombstoneCount,
+            final long maxVersion,
+            @NotNull final ByteBuffer minKey,
+            @NotNull final ByteBuffer maxKey) {
+        this.count = count;
+        this.rangeTombstoneCount = rangeTombstoneCount;
+        this.maxVersion = maxVersion;
+        this.minKey = minKey;
+        this.maxKey = maxKey;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    int getRangeTombstoneCount() {
+        return rangeTombstoneCount;
+    }
+
+    int getOperandCount() {
+        return operandCount;
+    }
+
+    /**
+     * Sets the number of merge operands, none by default.
+     */
+    TableMeta withOperandCount(final int operandCount) {
+        this.operandCount = operandCount;
+        return this;
+    }
+
+    /**
+     * Index of the directory the table is in among the data directories of the storage,
+     * {@link #NO_DIRECTORY} if it is not known. The {@link Manifest} writes it apart from the rest,
+     * as it was added later.
+     */
+    int getDirectory() {
+        return directory;
+    }
+
+    TableMeta withDirectory(final int directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    long getMaxVersion() {
+        return maxVersion;
+    }
+
+    ByteBuffer getMinKey() {
+        return minKey.asReadOnlyBuffer();
+    }
+
+    ByteBuffer getMaxKey() {
+        return maxKey.asReadOnlyBuffer();
+    }
+
+    /**
+     * format version (integer) | n (integer) | range tombstones (integer) | operands (integer) | max version (long) |
+     * minKeySize (integer) | minKey | maxKeySize (integer) | maxKey
+     */
+    void write(@NotNull final DataOutput out) throws IOException {
+        out.writeInt(SSTable.FORMAT_VERSION);
+        out.writeInt(count);
+        out.writeInt(rangeTombstoneCount);
+        out.writeInt(operandCount);
+        out.writeLong(maxVersion);
+        writeKey(out, minKey);
+        writeKey(out, maxKey);
+    }
+
+    static TableMeta read(@NotNull final DataInput in) throws IOException {
+        final int format = in.readInt();
+        if (format != SSTable.FORMAT_VERSION) {
+            throw new IOException("Unsupported table format " + format);
+        }
+        final int count = in.readInt();
+        final int rangeTombstoneCount = in.readInt();
+        final int operandCount = in.readInt();
+        final long maxVersion = in.readLong();
+        final ByteBuffer minKey = readKey(in);
+        final ByteBuffer maxKey = readKey(in);
+        return new TableMeta(count, rangeTombstoneCount, maxVersion, minKey, maxKey).withOperandCount(operandCount);
+    }
+
+    private static void writeKey(@NotNull final DataOutput out, @NotNull final ByteBuffer key) throws IOException {
+        final byte[] bytes = new byte[key.remaining()];
+        key.duplicate().get(bytes);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static ByteBuffer readKey(@NotNull final DataInput in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -0,0 +1,138 @@
+package ru.mail.polis.suhova;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Cells of the memtable being flushed, where runs of at least {@link #MIN_TOMBSTONE_RUN} consecutive
+ * tombstones are replaced with range tombstones, so scans skip the deleted keys of the older tables in one seek.
+ * A run is replaced only if the tables have no live keys in it other than the deleted ones.
+ * The cells are streamed, only the current run is kept in memory, and the runs are checked against
+ * a cursor per table moving forward from run to run.
+ */
+final class TombstoneCoalescer implements Iterator<Cell> {
+    /**
+     * Shorter runs of tombstones are flushed as they are.
+     */
+    private static final int MIN_TOMBSTONE_RUN = 8;
+    private final Iterator<Cell> cells;
+    private final Collection<SSTable> tables;
+    private final List<RangeTombstone> rangeTombstones;
+    private final MergeOperator operator;
+    private final long now = System.currentTimeMillis();
+    private final List<Cell> run = new ArrayList<>();
+    private final Deque<Cell> ready = new ArrayDeque<>();
+    private List<CellCursor> cursors;
+    private MergeIterator live;
+
+    /**
+     * Creates the cells of the memtable for a flush.
+     *
+     * @param cells           - cells of the memtable
+     * @param tables          - tables to flush over, newer tables first
+     * @param rangeTombstones - the range tombstones of the runs are added here as the runs are read
+     * @param operator        - operator for merge operands of the tables, if set
+     */
+    TombstoneCoalescer(
+            @NotNull final Iterator<Cell> cells,
+            @NotNull final Collection<SSTable> tables,
+            @NotNull final List<RangeTombstone> rangeTombstones,
+            @Nullable final MergeOperator operator) {
+        this.cells = cells;
+        this.tables = tables;
+        this.rangeTombstones = rangeTombstones;
+        this.operator = operator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (ready.isEmpty() && (cells.hasNext() || !run.isEmpty())) {
+            if (!cells.hasNext()) {
+                endRun();
+                break;
+            }
+            final Cell cell = cells.next();
+            if (cell.getValue().isTombstone()) {
+                run.add(cell);
+                continue;
+            }
+            endRun();
+            ready.add(cell);
+        }
+        return !ready.isEmpty();
+    }
+
+    @Override
+    public Cell next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more cells");
+        }
+        return ready.poll();
+    }
+
+    private void endRun() {
+        if (run.size() < MIN_TOMBSTONE_RUN) {
+            ready.addAll(run);
+            run.clear();
+            return;
+        }
+        final ByteBuffer last = run.get(run.size() - 1).key();
+        // The least key greater than the last one, as keys are compared as signed bytes
+        final ByteBuffer to = ByteBuffer.allocate(last.remaining() + 1)
+                .put(last.duplicate())
+                .put(Byte.MIN_VALUE)
+                .rewind();
+        if (deletesOnly(to)) {
+            final long version = run.stream().mapToLong(cell -> cell.getValue().getVersion()).max().getAsLong();
+            rangeTombstones.add(new RangeTombstone(run.get(0).key(), to, version));
+        } else {
+            ready.addAll(run);
+        }
+        run.clear();
+    }
+
+    /**
+     * Whether a range tombstone of the run would delete just what its tombstones do:
+     * every live key of the tables in the run is one of the tombstones and is older than it.
+     */
+    private boolean deletesOnly(@NotNull final ByteBuffer to) {
+        if (live == null) {
+            cursors = new ArrayList<>(tables.size());
+            final List<RangeTombstone> deleted = new ArrayList<>();
+            for (final SSTable table : tables) {
+                cursors.add(table.cursor());
+                deleted.addAll(table.getRangeTombstones());
+            }
+            live = new MergeIterator(cursors, false, deleted, operator, now);
+        }
+        for (final CellCursor cursor : cursors) {
+            cursor.seek(run.get(0).key());
+        }
+        live.reset(now);
+        int i = 0;
+        while (live.hasNext()) {
+            final Cell cell = live.next();
+            if (cell.key().compareTo(to) >= 0) {
+                break;
+            }
+            while (i < run.size() && run.get(i).key().compareTo(cell.key()) < 0) {
+                i++;
+            }
+            if (i == run.size()
+                    || !run.get(i).key().equals(cell.key())
+                    || run.get(i).getValue().getVersion() <= cell.getValue().getVersion()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
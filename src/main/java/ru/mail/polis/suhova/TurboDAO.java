@@ -2,34 +2,93 @@ package ru.mail.polis.suhova;
 
 import com.google.common.collect.Iterators;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.mail.polis.Cursor;
 import ru.mail.polis.DAO;
+import ru.mail.polis.Histogram;
 import ru.mail.polis.Iters;
 import ru.mail.polis.Record;
 
+import javax.management.ObjectName;
+
 import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Objects.requireNonNull;
 
 public class TurboDAO implements DAO {
-    private static final String SUFFIX = "sst.dat";
+    static final String SUFFIX = "sst.dat";
     private static final String TEMP = "sst.tmp";
+    private static final String RUN = "run.tmp";
     private final long flushThreshold;
-    private final File dir;
-    private NavigableMap<Integer, Table> ssTables = new TreeMap<>();
-    private MemTable memTable;
+    private final long tableSize;
+    private final int prefixLength;
+    /**
+     * Data directories, the first one also keeps the {@link Manifest}.
+     */
+    private final List<File> dirs;
+    private final File coldDir;
+    private final long hotSize;
+    private final Manifest manifest;
+    private final FileCache files;
+    private final Prefetcher prefetcher = new Prefetcher(2);
+    private final int startupThreads;
+    private final ChecksumMode checksumMode;
+    private final Verifier verifier;
+    private final Scrubber scrubber;
+    private final Metrics metrics = new Metrics();
+    private final Histogram getLatency = metrics.histogram("get.latency");
+    private final Histogram getAllLatency = metrics.histogram("get.all.latency");
+    /**
+     * Time to create an iterator or cursor positioned at its first record, not to go through it.
+     */
+    private final Histogram scanSetup = metrics.histogram("scan.setup");
+    private final Histogram readTables = metrics.histogram("read.tables");
+    private final Histogram flushLatency = metrics.histogram("flush.latency");
+    private final Histogram compactLatency = metrics.histogram("compact.latency");
+    private final LongAdder flushBytes = metrics.counter("flush.bytes");
+    private final LongAdder compactBytesRead = metrics.counter("compact.bytes.read");
+    private final LongAdder compactBytesWritten = metrics.counter("compact.bytes.written");
+    private NavigableMap<Integer, SSTable> ssTables = new TreeMap<>();
+    /**
+     * The live tables for the other threads: the scrubber and the metrics.
+     */
+    private volatile List<SSTable> liveTables = Collections.emptyList();
+    private volatile MemTable memTable;
     private int generation;
+    private CompactionFilter compactionFilter = CompactionFilter.KEEP_ALL;
+    private MergeOperator mergeOperator;
 
     /**
      * Implementation {@link DAO}.
@@ -38,43 +97,545 @@ public class TurboDAO implements DAO {
      * @param flushThreshold - when the table reaches this size, it flushes
      */
     public TurboDAO(@NotNull final File dir, final long flushThreshold) {
+        this(dir, flushThreshold, 2 * flushThreshold);
+    }
+
+    /**
+     * Implementation {@link DAO}.
+     *
+     * @param dir            - directory
+     * @param flushThreshold - when the table reaches this size, it flushes
+     * @param tableSize      - target size of a single SSTable written by flush or compaction
+     */
+    public TurboDAO(@NotNull final File dir, final long flushThreshold, final long tableSize) {
+        this(dir, new Config(flushThreshold).setTableSize(tableSize));
+    }
+
+    /**
+     * Implementation {@link DAO}.
+     *
+     * @param dir    - directory
+     * @param config - settings
+     */
+    public TurboDAO(@NotNull final File dir, @NotNull final Config config) {
+        this(List.of(dir), config);
+    }
+
+    /**
+     * Implementation {@link DAO} keeping the tables in several directories, e.g. on separate disks.
+     * New tables are spread over the directories by free space and number of tables,
+     * a table is read from whichever directory it is in.
+     *
+     * @param dirs   - data directories, the first one keeps the manifest
+     * @param config - settings
+     */
+    public TurboDAO(@NotNull final List<File> dirs, @NotNull final Config config) {
+        if (dirs.isEmpty()) {
+            throw new IllegalArgumentException("No data directories");
+        }
         this.memTable = new MemTable();
-        this.flushThreshold = flushThreshold;
-        this.dir = dir;
-        generation = -1;
-        final File[] list = dir.listFiles((dir1, name) -> name.endsWith(SUFFIX));
-        assert list != null;
-        Arrays.stream(list)
-                .filter(file -> !file.isDirectory())
-                .forEach(
-                        f -> {
-                            final String name = f.getName();
-                            final int gen = Integer.parseInt(name.substring(0, name.indexOf(SUFFIX)));
-                            try {
-                                ssTables.put(gen, new SSTable(f));
-                            } catch (IOException e) {
-                                throw new UncheckedIOException(e);
-                            }
-                            if (gen > generation) generation = gen;
+        this.flushThreshold = config.getFlushThreshold();
+        this.tableSize = config.getTableSize();
+        this.prefixLength = config.getPrefixLength();
+        this.dirs = List.copyOf(dirs);
+        this.coldDir = config.getColdDir();
+        this.hotSize = config.getHotSize();
+        this.files = new FileCache(config.getMaxOpenFiles());
+        this.startupThreads = config.getStartupThreads();
+        this.checksumMode = config.getChecksumMode();
+        this.mergeOperator = config.getMergeOperator();
+        try {
+            final File dir = this.dirs.get(0);
+            if (Manifest.exists(dir)) {
+                this.manifest = Manifest.open(dir);
+                Map<Integer, File> located = null;
+                for (final Map.Entry<Integer, TableMeta> table : manifest.getTables().entrySet()) {
+                    File file = recorded(table.getKey(), table.getValue());
+                    if (file == null) {
+                        if (located == null) {
+                            located = locate();
                         }
-                );
-        generation++;
+                        file = located.get(table.getKey());
+                    }
+                    if (file == null) {
+                        throw new IOException("No file of table " + table.getKey() + " in " + this.dirs);
+                    }
+                    ssTables.put(table.getKey(), new SSTable(file, table.getValue(), files, checksumMode, prefetcher));
+                }
+            } else {
+                final Map<Integer, TableMeta> scanned = scan();
+                this.manifest = Manifest.create(dir, scanned, ssTables.isEmpty() ? -1 : ssTables.lastKey());
+                deleteTemporary();
+            }
+            if (mergeOperator == null && ssTables.values().stream().anyMatch(SSTable::hasOperands)) {
+                throw new IllegalStateException(
+                        "Tables of " + dir + " have merge operands but no merge operator is set");
+            }
+            if (config.isPreload()) {
+                final List<Callable<Void>> loads = new ArrayList<>(ssTables.size());
+                for (final SSTable table : ssTables.values()) {
+                    loads.add(() -> {
+                        table.load();
+                        return null;
+                    });
+                }
+                inParallel(loads);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        generation = manifest.nextGeneration();
+        this.verifier = config.isVerify() ? Verifier.start(ssTables.values()) : Verifier.done();
+        this.scrubber = Scrubber.start(config.getScrubInterval());
+        publishTables();
+        metrics.gauge("memtable.bytes", () -> memTable.sizeInBytes());
+        metrics.gauge("memtable.entries", () -> memTable.getEntryCount());
+        metrics.gauge("sstables.count", () -> liveTables.size());
+        metrics.gauge("sstables.bytes", () -> liveTables.stream().mapToLong(table -> table.getFile().length()).sum());
+        metrics.gauge("files.open", files::size);
+        if (config.isJmx()) {
+            metrics.register("ru.mail.polis.suhova:type=TurboDAO,name="
+                    + ObjectName.quote(this.dirs.get(0).getAbsolutePath()));
+        }
+    }
+
+    /**
+     * Opens the tables of a directory written before the {@link Manifest} was there.
+     *
+     * @return metadata of the tables to start the manifest with
+     */
+    private Map<Integer, TableMeta> scan() throws IOException {
+        final List<Integer> gens = new ArrayList<>();
+        final List<Callable<SSTable>> opens = new ArrayList<>();
+        for (final Map.Entry<Integer, File> table : locate().entrySet()) {
+            gens.add(table.getKey());
+            opens.add(() -> new SSTable(table.getValue(), files, checksumMode, prefetcher));
+        }
+        final List<SSTable> opened = inParallel(opens);
+        for (int i = 0; i < gens.size(); i++) {
+            ssTables.put(gens.get(i), opened.get(i));
+        }
+        return metas(ssTables);
+    }
+
+    /**
+     * Runs the startup tasks on a pool of {@code startupThreads} threads.
+     *
+     * @return results of the tasks in the same order
+     */
+    private <T> List<T> inParallel(@NotNull final List<Callable<T>> tasks) throws IOException {
+        if (tasks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(startupThreads, tasks.size())));
+        try {
+            final List<T> results = new ArrayList<>(tasks.size());
+            for (final Future<T> result : pool.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while opening tables", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException("Failed to open tables", cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Background check of all the cells of the tables present at startup, if {@link Config#isVerify()} is on.
+     * Completes exceptionally if a table is corrupted. It is cancelled by {@link #compact()} and {@link #close()}.
+     */
+    @NotNull
+    public CompletableFuture<Void> getVerification() {
+        return verifier.result();
+    }
+
+    /**
+     * Counters, gauges and histograms of the storage: latencies of get, flush and compact in nanoseconds,
+     * the time it takes iterator, range, prefix and cursor to position on the first record in nanoseconds,
+     * SSTables read per iterator, bytes flushed and compacted, sizes of the memtable and the tables.
+     */
+    @NotNull
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Files of the tables the background scrubber has found corrupted, if {@link Config#getScrubInterval()} is set.
+     */
+    @NotNull
+    public Set<File> getCorruptedTables() {
+        return scrubber.getCorrupted();
+    }
+
+    /**
+     * Data directories and the cold one, if any.
+     */
+    private List<File> dataDirs() {
+        final List<File> all = new ArrayList<>(dirs);
+        if (coldDir != null) {
+            all.add(coldDir);
+        }
+        return all;
+    }
+
+    /**
+     * File of the table in the directory the {@link Manifest} has for it, null if it is not known or not there,
+     * e.g. the directories have been reordered.
+     */
+    @Nullable
+    private File recorded(final int gen, @NotNull final TableMeta meta) {
+        final List<File> all = dataDirs();
+        if (meta.getDirectory() < 0 || meta.getDirectory() >= all.size()) {
+            return null;
+        }
+        final File dir = all.get(meta.getDirectory());
+        for (final String suffix : List.of(SUFFIX, SUFFIX + CompressedFile.EXTENSION)) {
+            final File file = new File(dir, gen + suffix);
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deletes what a crash may leave in the data directories and the cold one: temporary tables and spilled runs
+     * of a flush, compaction or bulk load, and table files of no live table, placed but not recorded
+     * in the {@link Manifest} or removed from it but not deleted. The files are in the way of nothing,
+     * so it is left to the user to do once in a while, as it lists the directories.
+     * It must not run along with a flush, compaction or bulk load.
+     */
+    public void sweep() throws IOException {
+        deleteTemporary();
+        for (final File dir : dataDirs()) {
+            for (final File file : list(dir, (parent, name) -> generation(name) >= 0)) {
+                final SSTable table = ssTables.get(generation(file.getName()));
+                if (file.isFile() && (table == null || !table.getFile().equals(file))) {
+                    Files.delete(file.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the temporary tables and spilled runs left by a flush, compaction or bulk load which crashed.
+     */
+    private void deleteTemporary() throws IOException {
+        for (final File dir : dataDirs()) {
+            final File[] list = list(dir, (parent, name) -> name.endsWith(TEMP)
+                    || name.endsWith(TEMP + CompressedFile.EXTENSION)
+                    || name.endsWith(RUN));
+            for (final File file : list) {
+                Files.delete(file.toPath());
+            }
+        }
+    }
+
+    private static File[] list(@NotNull final File dir, @NotNull final FilenameFilter filter) throws IOException {
+        final File[] list = dir.listFiles(filter);
+        if (list == null) {
+            throw new IOException("Can't list " + dir);
+        }
+        return list;
+    }
+
+    /**
+     * Table files of all the data directories and the cold one by generation, for the tables written
+     * before the {@link Manifest} or its directories were there, or moved since.
+     * A generation is in one file only, two files of it mean the directories are mixed up.
+     */
+    private Map<Integer, File> locate() throws IOException {
+        final Map<Integer, File> tables = new HashMap<>();
+        for (final File dir : dataDirs()) {
+            for (final File file : list(dir, (parent, name) -> generation(name) >= 0)) {
+                if (!file.isFile()) {
+                    continue;
+                }
+                final File other = tables.put(generation(file.getName()), file);
+                if (other != null) {
+                    throw new IOException("Table is in two files: " + other + " and " + file);
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Generation of a table file by its name, -1 if it is not one.
+     */
+    static int generation(@NotNull final String name) {
+        final int end = name.indexOf(SUFFIX);
+        if (end <= 0
+                || !(name.endsWith(SUFFIX) || name.endsWith(SUFFIX + CompressedFile.EXTENSION))) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(0, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Directory for the next table: the one with the most free space per table,
+     * counting the live tables and the ones being written, so the tables are striped
+     * over the directories and a fuller or busier directory gets fewer of them.
+     *
+     * @param written - tables being written by directory, the chosen one is counted in
+     */
+    private File nextDir(@NotNull final Map<File, Integer> written) {
+        File best = dirs.get(0);
+        if (dirs.size() > 1) {
+            final Map<File, Integer> load = new HashMap<>(written);
+            for (final SSTable table : ssTables.values()) {
+                load.merge(table.getFile().getParentFile(), 1, Integer::sum);
+            }
+            double bestScore = -1;
+            for (final File dir : dirs) {
+                final double score = (double) dir.getUsableSpace() / (1 + load.getOrDefault(dir, 0));
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = dir;
+                }
+            }
+        }
+        written.merge(best, 1, Integer::sum);
+        return best;
+    }
+
+    /**
+     * Sets the filter every live value goes through during {@link #compact()}.
+     */
+    public void setCompactionFilter(@NotNull final CompactionFilter compactionFilter) {
+        this.compactionFilter = compactionFilter;
+    }
+
+    /**
+     * Sets the operator behind {@link #merge(ByteBuffer, ByteBuffer)}, replacing the one of the {@link Config}.
+     * Data written with merge can only be opened again with {@link Config#setMergeOperator(MergeOperator)}.
+     */
+    public void setMergeOperator(@NotNull final MergeOperator mergeOperator) {
+        this.mergeOperator = mergeOperator;
     }
 
     @NotNull
     @Override
     public Iterator<Record> iterator(@NotNull final ByteBuffer from) {
-        final Iterator<Cell> alive = Iterators.filter(cellIterator(from),
-                cell -> !requireNonNull(cell).getValue().isTombstone());
-        return Iterators.transform(alive, cell -> Record.of(requireNonNull(cell).getKey(), cell.getValue().getData()));
+        return range(from, null);
+    }
+
+    /**
+     * Unlike the default implementation, passes the upper bound down to the tables
+     * and skips the tables out of the range.
+     */
+    @NotNull
+    @Override
+    public Iterator<Record> range(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        if (to != null && from.compareTo(to) > 0) {
+            return Iters.empty();
+        }
+        final long start = System.nanoTime();
+        try {
+            return records(cellIterator(from, to));
+        } finally {
+            scanSetup.record(System.nanoTime() - start);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Record> descendingRange(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        if (to != null && from.compareTo(to) > 0) {
+            return Iters.empty();
+        }
+        final long start = System.nanoTime();
+        try {
+            return records(merge(from, to, true, null));
+        } finally {
+            scanSetup.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Unlike the default implementation, the stream splits the range in halves of the largest table,
+     * so a parallel stream works on disjoint subranges with separate merges of the tables.
+     */
+    @NotNull
+    @Override
+    public Stream<Record> stream(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        if (to != null && from.compareTo(to) > 0) {
+            return Stream.empty();
+        }
+        final List<SSTable> tables = new ArrayList<>(ssTables.values());
+        return StreamSupport.stream(new RangeSpliterator(from, to, tables, this::range), false);
+    }
+
+    /**
+     * Unlike the default implementation, the cursor keeps positions in the tables between seeks,
+     * so seeking forward searches the tables from the current positions.
+     * The cursor sees the tables of the moment it is created and must not outlive {@link #compact()}.
+     */
+    @NotNull
+    @Override
+    public Cursor cursor() {
+        final long start = System.nanoTime();
+        final List<CellCursor> sources = new ArrayList<>(ssTables.size() + 1);
+        final List<RangeTombstone> rangeTombstones = new ArrayList<>(memTable.getRangeTombstones());
+        sources.add(memTable.cursor());
+        for (final SSTable table : ssTables.descendingMap().values()) {
+            sources.add(table.cursor());
+            rangeTombstones.addAll(table.getRangeTombstones());
+        }
+        final Cursor cursor = new MergeCursor(sources, rangeTombstones, mergeOperator);
+        scanSetup.record(System.nanoTime() - start);
+        return cursor;
+    }
+
+    /**
+     * Unlike the default implementation, looks the keys up in ascending order with a cursor per table,
+     * so each table is searched forward from the previous key, and skips the tables
+     * which can't have the key judging by their bounds and prefix filters.
+     * The cells found go through one merge of the tables, which sweeps the range tombstones along with the keys.
+     */
+    @NotNull
+    @Override
+    public Map<ByteBuffer, ByteBuffer> getAll(@NotNull final Collection<ByteBuffer> keys) {
+        final long start = System.nanoTime();
+        try {
+            final List<ByteBuffer> sorted = new ArrayList<>(new TreeSet<>(keys));
+            final List<Iterator<Cell>> sources = new ArrayList<>(ssTables.size() + 1);
+            final List<RangeTombstone> rangeTombstones = new ArrayList<>(memTable.getRangeTombstones());
+            sources.add(lookups(memTable.cursor(), sorted, key -> true));
+            for (final SSTable table : ssTables.descendingMap().values()) {
+                sources.add(lookups(table.cursor(), sorted, table::mightContain));
+                rangeTombstones.addAll(table.getRangeTombstones());
+            }
+            final Iterator<Cell> live = new MergeIterator(
+                    sources, false, rangeTombstones, mergeOperator, System.currentTimeMillis());
+            final Map<ByteBuffer, ByteBuffer> values = new HashMap<>();
+            int i = 0;
+            while (live.hasNext()) {
+                final Cell cell = live.next();
+                while (!sorted.get(i).equals(cell.key())) {
+                    i++;
+                }
+                values.put(sorted.get(i), cell.getValue().getData().asReadOnlyBuffer());
+            }
+            return values;
+        } finally {
+            getAllLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Cells of the keys in the table, found one after another by the cursor.
+     *
+     * @param cursor   - cursor of the table
+     * @param keys     - keys in ascending order
+     * @param contains - whether the table may have the key
+     */
+    private static Iterator<Cell> lookups(
+            @NotNull final CellCursor cursor,
+            @NotNull final List<ByteBuffer> keys,
+            @NotNull final Predicate<ByteBuffer> contains) {
+        return Iterators.concat(Iterators.transform(
+                Iterators.filter(keys.iterator(), contains::test),
+                key -> lookup(cursor, requireNonNull(key))));
+    }
+
+    private static Iterator<Cell> lookup(@NotNull final CellCursor cursor, @NotNull final ByteBuffer key) {
+        cursor.seek(key);
+        if (cursor.hasNext()) {
+            final Cell cell = cursor.next();
+            if (cell.key().equals(key)) {
+                return Iterators.singletonIterator(cell);
+            }
+        }
+        return Collections.emptyIterator();
     }
 
-    private Iterator<Cell> cellIterator(@NotNull final ByteBuffer from) {
+    /**
+     * Unlike the default implementation, skips the tables whose prefix filter has no such prefix.
+     * The range tombstones of the skipped tables still apply to the rest of the tables.
+     */
+    @NotNull
+    @Override
+    public Iterator<Record> prefix(@NotNull final ByteBuffer prefix) {
+        final long start = System.nanoTime();
+        try {
+            return records(merge(prefix, DAO.prefixEnd(prefix), false, prefix));
+        } finally {
+            scanSetup.record(System.nanoTime() - start);
+        }
+    }
+
+    private static Iterator<Record> records(@NotNull final Iterator<Cell> cells) {
+        return Iterators.transform(cells, cell -> Record.of(requireNonNull(cell).key(), cell.getValue().getData()));
+    }
+
+    /**
+     * Live cells of all the tables from "from" (inclusive) until "to" (exclusive, no bound if it is null).
+     */
+    private Iterator<Cell> cellIterator(@NotNull final ByteBuffer from, @Nullable final ByteBuffer to) {
+        return merge(from, to, false, null);
+    }
+
+    private Iterator<Cell> merge(
+            @NotNull final ByteBuffer from,
+            @Nullable final ByteBuffer to,
+            final boolean descending,
+            @Nullable final ByteBuffer prefix) {
         final List<Iterator<Cell>> iters = new ArrayList<>(ssTables.size() + 1);
-        iters.add(memTable.iterator(from));
-        ssTables.descendingMap().values().forEach(table -> iters.add(table.iterator(from)));
-        final Iterator<Cell> merged = Iterators.mergeSorted(iters, Comparator.naturalOrder());
-        return Iters.collapseEquals(merged, Cell::getKey);
+        final List<RangeTombstone> rangeTombstones = new ArrayList<>(memTable.getRangeTombstones());
+        iters.add(cells(memTable, from, to, descending));
+        for (final SSTable table : ssTables.descendingMap().values()) {
+            if (!table.overlaps(from, to)) {
+                continue;
+            }
+            rangeTombstones.addAll(table.getRangeTombstones());
+            if (prefix == null || table.mightContainPrefix(prefix)) {
+                iters.add(cells(table, from, to, descending));
+            }
+        }
+        readTables.record(iters.size() - 1);
+        return new MergeIterator(iters, descending, rangeTombstones, mergeOperator, System.currentTimeMillis());
+    }
+
+    private static Iterator<Cell> cells(
+            @NotNull final Table table,
+            @NotNull final ByteBuffer from,
+            @Nullable final ByteBuffer to,
+            final boolean descending) {
+        return descending ? table.descendingIterator(from, to) : table.iterator(from, to);
+    }
+
+    @NotNull
+    @Override
+    public ByteBuffer get(@NotNull final ByteBuffer key) throws NoSuchElementException {
+        final long start = System.nanoTime();
+        try {
+            final Iterator<Record> iter = records(cellIterator(key, null));
+            if (iter.hasNext()) {
+                final Record next = iter.next();
+                if (next.getKey().equals(key)) {
+                    return next.getValue();
+                }
+            }
+            throw new NoSuchElementException("Not found");
+        } finally {
+            getLatency.record(System.nanoTime() - start);
+        }
     }
 
     @Override
@@ -85,6 +646,43 @@ public class TurboDAO implements DAO {
         memTable.upsert(key, value);
     }
 
+    @Override
+    public void upsert(
+            @NotNull final ByteBuffer key,
+            @NotNull final ByteBuffer value,
+            @NotNull final Duration ttl) throws IOException {
+        final long expire = expire(ttl);
+        if (memTable.sizeInBytes() >= flushThreshold) {
+            flush();
+        }
+        memTable.upsert(key, value, expire);
+    }
+
+    /**
+     * Time the value with the time-to-live expires at, {@link Value#NEVER} if it is too far to count.
+     */
+    private static long expire(@NotNull final Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Time-to-live must be positive: " + ttl);
+        }
+        try {
+            return Math.addExact(System.currentTimeMillis(), ttl.toMillis());
+        } catch (ArithmeticException e) {
+            return Value.NEVER;
+        }
+    }
+
+    @Override
+    public void merge(@NotNull final ByteBuffer key, @NotNull final ByteBuffer operand) throws IOException {
+        if (mergeOperator == null) {
+            throw new IllegalStateException("Merge operator is not set");
+        }
+        if (memTable.sizeInBytes() >= flushThreshold) {
+            flush();
+        }
+        memTable.merge(key, operand, mergeOperator);
+    }
+
     @Override
     public void remove(@NotNull final ByteBuffer key) throws IOException {
         if (memTable.sizeInBytes() >= flushThreshold) {
@@ -93,38 +691,328 @@ public class TurboDAO implements DAO {
         memTable.remove(key);
     }
 
+    @Override
+    public void deleteRange(@NotNull final ByteBuffer from, @NotNull final ByteBuffer to) throws IOException {
+        if (from.compareTo(to) >= 0) {
+            return;
+        }
+        if (memTable.sizeInBytes() >= flushThreshold) {
+            flush();
+        }
+        memTable.deleteRange(from, to);
+    }
+
     @Override
     public void close() throws IOException {
+        verifier.stop();
+        scrubber.stop();
         if (memTable.getEntryCount() > 0) {
             flush();
         }
+        prefetcher.close();
         ssTables.values().forEach(Table::close);
+        manifest.close();
+        metrics.unregister();
     }
 
-    private void flush() throws IOException {
-        final File tmp = new File(dir, generation + TEMP);
-        SSTable.write(tmp, memTable.iterator(ByteBuffer.allocate(0)));
-        final File dat = new File(dir, generation + SUFFIX);
-        Files.move(tmp.toPath(), dat.toPath(), StandardCopyOption.ATOMIC_MOVE);
-        ssTables.put(generation, new SSTable(dat));
-        generation++;
+    /**
+     * Writes the memtable into new tables whatever its size, package-private for the benchmarks.
+     */
+    void flush() throws IOException {
+        final long start = System.nanoTime();
+        final List<RangeTombstone> rangeTombstones = new ArrayList<>(memTable.getRangeTombstones());
+        final Iterator<Cell> cells = new TombstoneCoalescer(
+                memTable.iterator(ByteBuffer.allocate(0)),
+                new ArrayList<>(ssTables.descendingMap().values()),
+                rangeTombstones,
+                mergeOperator);
+        final List<File> tables = writeTables(cells, rangeTombstones);
+        flushBytes.add(length(tables));
+        attach(tables);
         memTable = new MemTable();
+        flushLatency.record(System.nanoTime() - start);
     }
 
+    private static long length(@NotNull final Collection<File> files) {
+        return files.stream().mapToLong(File::length).sum();
+    }
+
+    /**
+     * Moves the temporary tables written by {@link #writeTables(Iterator, List)} into place
+     * as the newest generations and records them in the {@link Manifest}.
+     */
+    private void attach(@NotNull final List<File> tables) throws IOException {
+        final NavigableMap<Integer, SSTable> placed = place(tables);
+        manifest.apply(metas(placed), Collections.emptyList());
+        ssTables.putAll(placed);
+        publishTables();
+    }
+
+    private void publishTables() {
+        liveTables = List.copyOf(ssTables.values());
+        scrubber.setTables(liveTables);
+    }
+
+    /**
+     * Moves the temporary tables into place as the next generations and opens them.
+     * The tables are not live until they are in the {@link Manifest}, the moves are on the disk before that.
+     */
+    private NavigableMap<Integer, SSTable> place(@NotNull final List<File> tables) throws IOException {
+        final NavigableMap<Integer, SSTable> placed = new TreeMap<>();
+        for (final File tmp : tables) {
+            final String suffix = CompressedFile.isCompressed(tmp) ? SUFFIX + CompressedFile.EXTENSION : SUFFIX;
+            final File dat = new File(tmp.getParentFile(), generation + suffix);
+            Files.move(tmp.toPath(), dat.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            placed.put(generation, new SSTable(dat, files, checksumMode, prefetcher));
+            generation++;
+        }
+        for (final File dir : tables.stream().map(File::getParentFile).collect(Collectors.toSet())) {
+            Manifest.syncDirectory(dir);
+        }
+        return placed;
+    }
+
+    private Map<Integer, TableMeta> metas(@NotNull final Map<Integer, SSTable> tables) {
+        final List<File> all = dataDirs();
+        final Map<Integer, TableMeta> metas = new HashMap<>();
+        tables.forEach((gen, table) -> metas.put(
+                gen,
+                table.getMeta().withDirectory(all.indexOf(table.getFile().getParentFile()))));
+        return metas;
+    }
+
+    /**
+     * Sorts the records externally and writes them straight into tables, bypassing the memtable.
+     * The records are sorted in memory in runs of the flush threshold size, the runs are spilled
+     * to temporary files spread over the directories like tables
+     * and merged into tables of {@code tableSize}. The tables are attached
+     * only once all of them are written, as the newest generations, so the loaded values win
+     * over everything written before.
+     */
+    @Override
+    public void bulkLoad(@NotNull final Iterator<Record> records) throws IOException {
+        final List<File> runFiles = new ArrayList<>();
+        final Map<File, Integer> spilled = new HashMap<>();
+        final List<SSTable> runs = new ArrayList<>();
+        try {
+            MemTable run = new MemTable();
+            while (records.hasNext()) {
+                final Record record = records.next();
+                run.upsert(record.getKey(), record.getValue());
+                if (run.sizeInBytes() >= flushThreshold && records.hasNext()) {
+                    final File runFile = new File(nextDir(spilled), runFiles.size() + RUN);
+                    runFiles.add(runFile);
+                    SSTable.write(runFile, run.iterator(ByteBuffer.allocate(0)), Long.MAX_VALUE,
+                            Collections.emptyList(), 0);
+                    run = new MemTable();
+                }
+            }
+            final List<Iterator<Cell>> sources = new ArrayList<>(runFiles.size() + 1);
+            sources.add(run.iterator(ByteBuffer.allocate(0)));
+            for (int i = runFiles.size() - 1; i >= 0; i--) {
+                final SSTable table = new SSTable(runFiles.get(i), files, checksumMode, prefetcher);
+                runs.add(table);
+                sources.add(table.iterator(ByteBuffer.allocate(0)));
+            }
+            final Iterator<Cell> cells = new MergeIterator(
+                    sources, false, Collections.emptyList(), null, System.currentTimeMillis());
+            attach(writeTables(cells, new ArrayList<>()));
+        } finally {
+            for (final SSTable run : runs) {
+                run.retire();
+            }
+            for (final File runFile : runFiles) {
+                Files.deleteIfExists(runFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * Merges all the tables into new ones. Every version of every key takes part in it,
+     * so tombstones and expired values are not needed anymore and are dropped.
+     * The rest of the values go through the {@link CompactionFilter}.
+     * The new tables replace the old ones in one {@link Manifest} edit, only then the old files are deleted.
+     * With the cold tier set, the memtable is flushed and the newest tables of the data directories
+     * up to {@link Config#getHotSize()} are left as they are. The rest are merged into the cold tier compressed
+     * along with the cold tables their keys overlap, the other cold tables are left as they are,
+     * so the cost follows the data leaving the hot tier rather than all the data.
+     * Tombstones are dropped all the same, as every version they delete is older and in a table
+     * with overlapping keys, so it is merged with them.
+     */
     @Override
     public void compact() throws IOException {
-        final Iterator<Cell> iterator = cellIterator(ByteBuffer.allocate(0));
-        final File tmp = new File(dir, generation + TEMP);
-        SSTable.write(tmp, iterator);
-        for (int i = 0; i < generation; i++) {
-            Files.delete(new File(dir, i + SUFFIX).toPath());
-        }
-        generation = 0;
-        final File file = new File(dir, generation + SUFFIX);
-        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
-        ssTables = new TreeMap<>();
-        ssTables.put(generation, new SSTable(file));
-        memTable = new MemTable();
-        generation++;
+        final long start = System.nanoTime();
+        verifier.stop();
+        final NavigableMap<Integer, SSTable> merged;
+        final List<File> written;
+        if (coldDir == null) {
+            merged = ssTables;
+            written = writeTables(filtered(cellIterator(ByteBuffer.allocate(0), null)), new ArrayList<>());
+        } else {
+            if (memTable.getEntryCount() > 0) {
+                flush();
+            }
+            merged = new TreeMap<>(ssTables);
+            merged.keySet().removeAll(hotTables());
+            final List<SSTable> leaving = merged.values().stream()
+                    .filter(table -> !isCold(table))
+                    .collect(Collectors.toList());
+            merged.values().removeIf(table -> isCold(table) && leaving.stream().noneMatch(hot -> overlap(hot, table)));
+            written = writeColdTables(filtered(cells(merged.descendingMap().values())));
+        }
+        compactBytesWritten.add(length(written));
+        final NavigableMap<Integer, SSTable> compacted = place(written);
+        manifest.apply(metas(compacted), merged.keySet());
+        final NavigableMap<Integer, SSTable> tables = new TreeMap<>(ssTables);
+        tables.keySet().removeAll(merged.keySet());
+        tables.putAll(compacted);
+        ssTables = tables;
+        publishTables();
+        if (coldDir == null) {
+            memTable = new MemTable();
+        }
+        for (final SSTable table : merged.values()) {
+            compactBytesRead.add(table.getFile().length());
+            table.retire();
+            Files.delete(table.getFile().toPath());
+        }
+        compactLatency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Generations of the newest tables of the data directories which are within {@link Config#getHotSize()}.
+     */
+    private Set<Integer> hotTables() {
+        final Set<Integer> hot = new HashSet<>();
+        long size = 0;
+        for (final Map.Entry<Integer, SSTable> table : ssTables.descendingMap().entrySet()) {
+            if (isCold(table.getValue())) {
+                continue;
+            }
+            final File file = table.getValue().getFile();
+            size += file.length();
+            if (size > hotSize) {
+                break;
+            }
+            hot.add(table.getKey());
+        }
+        return hot;
+    }
+
+    private boolean isCold(@NotNull final SSTable table) {
+        return table.getFile().getParentFile().equals(coldDir);
+    }
+
+    /**
+     * Whether the tables may have keys in common, judging by the key bounds.
+     */
+    private static boolean overlap(@NotNull final SSTable left, @NotNull final SSTable right) {
+        return left.overlaps(right.getMinKey(), null) && right.overlaps(left.getMinKey(), null);
+    }
+
+    /**
+     * Live cells of the tables, newer tables first, without the memtable.
+     */
+    private Iterator<Cell> cells(@NotNull final Collection<SSTable> tables) {
+        final List<Iterator<Cell>> iters = new ArrayList<>(tables.size());
+        final List<RangeTombstone> rangeTombstones = new ArrayList<>();
+        for (final SSTable table : tables) {
+            iters.add(table.iterator(ByteBuffer.allocate(0), null));
+            rangeTombstones.addAll(table.getRangeTombstones());
+        }
+        return new MergeIterator(iters, false, rangeTombstones, mergeOperator, System.currentTimeMillis());
+    }
+
+    /**
+     * Makes a consistent copy of the current data that can be opened as a {@link TurboDAO} with a single directory.
+     * The memtable is flushed, then the tables are hard-linked into the target directory along with a
+     * {@link Manifest} of them, so it takes no time whatever the data size, as the tables are never changed.
+     * A table on another file system, where it can't be linked, is copied.
+     *
+     * @param target - directory for the checkpoint, must not exist or be empty
+     */
+    public void checkpoint(@NotNull final File target) throws IOException {
+        Files.createDirectories(target.toPath());
+        final String[] existing = target.list();
+        if (existing == null || existing.length > 0) {
+            throw new IOException("Checkpoint directory " + target + " is not empty");
+        }
+        if (memTable.getEntryCount() > 0) {
+            flush();
+        }
+        for (final SSTable table : ssTables.values()) {
+            final File source = table.getFile();
+            final File link = new File(target, source.getName());
+            try {
+                Files.createLink(link.toPath(), source.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(source.toPath(), link.toPath());
+                Manifest.syncFile(link);
+            }
+        }
+        final Map<Integer, TableMeta> metas = metas(ssTables);
+        metas.values().forEach(meta -> meta.withDirectory(0));
+        Manifest.create(target, metas, generation - 1).close();
+    }
+
+    // The filter returns the very buffer it is given to keep the value, see CompactionFilter#filter
+    @SuppressWarnings("ReferenceEquality")
+    private Iterator<Cell> filtered(@NotNull final Iterator<Cell> cells) {
+        final CompactionFilter filter = compactionFilter;
+        if (filter == CompactionFilter.KEEP_ALL) {
+            return cells;
+        }
+        final Iterator<Cell> rewritten = Iterators.transform(cells, cell -> {
+            final Value value = requireNonNull(cell).getValue();
+            final ByteBuffer current = value.getData().asReadOnlyBuffer();
+            final ByteBuffer data = filter.filter(cell.getKey(), current);
+            if (data == null) {
+                return null;
+            }
+            return data == current
+                    ? cell
+                    : new Cell(cell.getKey(), new Value(data.duplicate(), value.getVersion(), value.getExpire()));
+        });
+        return Iterators.filter(rewritten, Objects::nonNull);
+    }
+
+    /**
+     * Writes cells into temporary tables of about {@code tableSize} bytes each,
+     * numbered starting from the current generation. A table gets the range tombstones
+     * there are by the end of its cells, as they may be added while the cells are read, and they are cleared.
+     */
+    private List<File> writeTables(
+            final Iterator<Cell> cells,
+            final List<RangeTombstone> rangeTombstones) throws IOException {
+        final List<File> tables = new ArrayList<>();
+        final Map<File, Integer> written = new HashMap<>();
+        int gen = generation;
+        while (cells.hasNext() || !rangeTombstones.isEmpty()) {
+            final File tmp = new File(nextDir(written), gen + TEMP);
+            SSTable.write(tmp, cells, tableSize, rangeTombstones, prefixLength);
+            tables.add(tmp);
+            rangeTombstones.clear();
+            gen++;
+        }
+        return tables;
+    }
+
+    /**
+     * Writes cells into temporary tables of the cold tier like {@link #writeTables(Iterator, List)} does,
+     * then compresses their cells, leaving the index as it is.
+     */
+    private List<File> writeColdTables(final Iterator<Cell> cells) throws IOException {
+        final List<File> tables = new ArrayList<>();
+        int gen = generation;
+        while (cells.hasNext()) {
+            final File tmp = new File(coldDir, gen + TEMP);
+            final int size = SSTable.write(tmp, cells, tableSize, Collections.emptyList(), prefixLength);
+            final File compressed = new File(coldDir, gen + TEMP + CompressedFile.EXTENSION);
+            CompressedFile.compress(tmp, compressed, size);
+            Files.delete(tmp.toPath());
+            tables.add(compressed);
+            gen++;
+        }
+        return tables;
     }
 }
@@ -3,8 +3,11 @@ package ru.mail.polis.suhova;
 import java.nio.ByteBuffer;
 
 public class Value {
+    public static final long NEVER = Long.MAX_VALUE;
     private final ByteBuffer data;
     private final long version;
+    private final long expire;
+    private final boolean operand;
 
     /**
      * Value from {@link Cell}.
@@ -13,14 +16,41 @@ public class Value {
      * @param version - timestamp
      */
     public Value(final ByteBuffer data, final long version) {
+        this(data, version, NEVER);
+    }
+
+    /**
+     * Value from {@link Cell} that lives until the given moment.
+     *
+     * @param data    - content
+     * @param version - timestamp
+     * @param expire  - time in millis when the value expires, {@link #NEVER} for a permanent one
+     */
+    public Value(final ByteBuffer data, final long version, final long expire) {
+        this(data, version, expire, false);
+    }
+
+    private Value(final ByteBuffer data, final long version, final long expire, final boolean operand) {
         this.data = data;
         this.version = version;
+        this.expire = expire;
+        this.operand = operand;
     }
 
     public static Value tombstone(final long version) {
         return new Value(null, version);
     }
 
+    /**
+     * Merge operand which is combined with older versions of the key by a {@link MergeOperator}.
+     *
+     * @param data    - operand
+     * @param version - timestamp
+     */
+    public static Value operand(final ByteBuffer data, final long version) {
+        return new Value(data, version, NEVER, true);
+    }
+
     public ByteBuffer getData() {
         return data;
     }
@@ -29,7 +59,23 @@ public class Value {
         return data == null;
     }
 
+    public boolean isOperand() {
+        return operand;
+    }
+
     public long getVersion() {
         return version;
     }
+
+    public long getExpire() {
+        return expire;
+    }
+
+    public boolean isExpiring() {
+        return expire != NEVER;
+    }
+
+    public boolean isExpired(final long now) {
+        return expire <= now;
+    }
 }
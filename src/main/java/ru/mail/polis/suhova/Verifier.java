@@ -0,0 +1,86 @@
+package ru.mail.polis.suhova;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Checks all the cells of the tables on a background thread, one table after another.
+ */
+final class Verifier {
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    private volatile boolean stopped;
+
+    private Verifier() {
+    }
+
+    /**
+     * Starts verification of the tables.
+     */
+    static Verifier start(@NotNull final Collection<SSTable> tables) {
+        final Verifier verifier = new Verifier();
+        final List<SSTable> snapshot = new ArrayList<>(tables);
+        final ExecutorService executor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("sstable-verifier-%d")
+                        .setDaemon(true)
+                        .build());
+        executor.execute(() -> verifier.verify(snapshot));
+        executor.shutdown();
+        return verifier;
+    }
+
+    /**
+     * Verification that is already over.
+     */
+    static Verifier done() {
+        final Verifier verifier = new Verifier();
+        verifier.result.complete(null);
+        return verifier;
+    }
+
+    private void verify(@NotNull final List<SSTable> tables) {
+        try {
+            for (final SSTable table : tables) {
+                if (stopped) {
+                    break;
+                }
+                table.verify(() -> stopped);
+            }
+            if (stopped) {
+                result.cancel(false);
+            } else {
+                result.complete(null);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (stopped) {
+                result.cancel(false);
+            } else {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Completes once all the tables are checked, exceptionally if one is corrupted.
+     * It is cancelled if the verification is stopped before.
+     */
+    CompletableFuture<Void> result() {
+        return result;
+    }
+
+    /**
+     * Stops the verification before the next block, e.g. as the tables are going to be deleted.
+     * Reads in progress are not interrupted, as an interrupt would close the file for all the readers.
+     */
+    void stop() {
+        stopped = true;
+    }
+}
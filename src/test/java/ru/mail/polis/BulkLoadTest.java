@@ -0,0 +1,67 @@
+package ru.mail.polis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Bulk load tests for {@link DAO} implementations.
+ */
+class BulkLoadTest extends TestBase {
+    @Test
+    void unsorted(@TempDir File data) throws IOException {
+        final NavigableMap<ByteBuffer, ByteBuffer> map = new TreeMap<>();
+        final List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final ByteBuffer key = randomKey();
+            final ByteBuffer value = randomValue();
+            records.add(Record.of(key, value));
+            map.put(key, value);
+        }
+        for (int i = 0; i < 100; i++) {
+            final ByteBuffer key = records.get(i * 7).getKey();
+            final ByteBuffer value = randomValue();
+            records.add(Record.of(key, value));
+            map.put(key, value);
+        }
+        Collections.shuffle(records.subList(0, 1000));
+
+        try (DAO dao = DAOFactory.create(data)) {
+            final ByteBuffer overwritten = records.get(0).getKey();
+            dao.upsert(overwritten, randomValue());
+            final ByteBuffer kept = randomKey();
+            final ByteBuffer value = randomValue();
+            dao.upsert(kept, value);
+            map.put(kept, value);
+            dao.bulkLoad(records.iterator());
+        }
+
+        try (DAO dao = DAOFactory.create(data)) {
+            final Iterator<Record> actual = dao.iterator(ByteBuffer.allocate(0));
+            for (final Map.Entry<ByteBuffer, ByteBuffer> entry : map.entrySet()) {
+                final Record record = actual.next();
+                assertEquals(entry.getKey(), record.getKey());
+                assertEquals(entry.getValue(), record.getValue());
+            }
+            assertFalse(actual.hasNext());
+
+            final ByteBuffer key = map.firstKey();
+            final ByteBuffer value = randomValue();
+            dao.upsert(key, value);
+            assertEquals(value, dao.get(key));
+        }
+    }
+}
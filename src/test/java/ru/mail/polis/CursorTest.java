@@ -0,0 +1,66 @@
+package ru.mail.polis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Cursor tests for {@link DAO} implementations.
+ */
+class CursorTest extends TestBase {
+    @Test
+    void seek(@TempDir File data) throws IOException {
+        final NavigableMap<ByteBuffer, ByteBuffer> map = new TreeMap<>();
+        try (DAO dao = DAOFactory.create(data)) {
+            for (int i = 0; i < 1000; i++) {
+                final ByteBuffer key = randomKey();
+                final ByteBuffer value = randomValue();
+                dao.upsert(key, value);
+                map.put(key, value);
+            }
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            int i = 0;
+            for (final ByteBuffer key : map.keySet().toArray(new ByteBuffer[0])) {
+                if (i++ % 2 == 0) {
+                    dao.remove(key);
+                    map.remove(key);
+                }
+            }
+
+            try (Cursor cursor = dao.cursor()) {
+                final Record first = cursor.next();
+                assertEquals(map.firstKey(), first.getKey());
+                assertEquals(map.firstEntry().getValue(), first.getValue());
+
+                for (int j = 0; j < 200; j++) {
+                    final ByteBuffer key = randomKey();
+                    cursor.seek(key);
+                    final Map.Entry<ByteBuffer, ByteBuffer> expected = map.ceilingEntry(key);
+                    if (expected == null) {
+                        assertFalse(cursor.hasNext());
+                    } else {
+                        final Record record = cursor.next();
+                        assertEquals(expected.getKey(), record.getKey());
+                        assertEquals(expected.getValue(), record.getValue());
+                    }
+                }
+
+                for (final Map.Entry<ByteBuffer, ByteBuffer> entry : map.entrySet()) {
+                    cursor.seek(entry.getKey());
+                    assertEquals(entry.getValue(), cursor.next().getValue());
+                }
+                assertFalse(cursor.hasNext());
+            }
+        }
+    }
+}
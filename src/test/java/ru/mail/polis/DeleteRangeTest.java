@@ -0,0 +1,116 @@
+package ru.mail.polis;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Range deletion tests for {@link DAO} implementations.
+ */
+class DeleteRangeTest extends TestBase {
+    private static final int COUNT = 100;
+    private static final int FROM = 20;
+    private static final int TO = 50;
+
+    @NotNull
+    private static ByteBuffer key(final int i) {
+        return ByteBuffer.wrap(String.format("key%04d", i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void fill(@NotNull final DAO dao, @NotNull final ByteBuffer value) throws IOException {
+        for (int i = 0; i < COUNT; i++) {
+            dao.upsert(key(i), value);
+        }
+    }
+
+    private static void check(@NotNull final DAO dao, @NotNull final ByteBuffer value) throws IOException {
+        for (int i = 0; i < COUNT; i++) {
+            final ByteBuffer key = key(i);
+            if (FROM <= i && i < TO) {
+                assertThrows(NoSuchElementException.class, () -> dao.get(key));
+            } else {
+                assertEquals(value, dao.get(key));
+            }
+        }
+        assertEquals(COUNT - (TO - FROM), size(dao.iterator(ByteBuffer.allocate(0))));
+    }
+
+    private static int size(@NotNull final Iterator<Record> iterator) {
+        int size = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            size++;
+        }
+        return size;
+    }
+
+    @Test
+    void inMemory(@TempDir File data) throws IOException {
+        final ByteBuffer value = randomValue();
+        try (DAO dao = DAOFactory.create(data)) {
+            fill(dao, value);
+            dao.deleteRange(key(FROM), key(TO));
+            check(dao, value);
+        }
+    }
+
+    @Test
+    void persisted(@TempDir File data) throws IOException {
+        final ByteBuffer value = randomValue();
+        try (DAO dao = DAOFactory.create(data)) {
+            fill(dao, value);
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.deleteRange(key(FROM), key(TO));
+            check(dao, value);
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            check(dao, value);
+        }
+    }
+
+    @Test
+    void upsertAfterDelete(@TempDir File data) throws IOException {
+        final ByteBuffer value = randomValue();
+        try (DAO dao = DAOFactory.create(data)) {
+            fill(dao, value);
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.deleteRange(key(0), key(COUNT));
+            fill(dao, value);
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.deleteRange(key(FROM), key(TO));
+            check(dao, value);
+        }
+    }
+
+    @Test
+    void compaction(@TempDir File data) throws IOException {
+        final int valueSize = 1024 * 1024;
+        final ByteBuffer value = randomBuffer(valueSize);
+        try (DAO dao = DAOFactory.create(data)) {
+            fill(dao, value);
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.deleteRange(key(0), key(COUNT));
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.compact();
+            assertFalse(dao.iterator(ByteBuffer.allocate(0)).hasNext());
+        }
+        assertTrue(Files.directorySize(data) < valueSize);
+    }
+}
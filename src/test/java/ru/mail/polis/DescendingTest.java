@@ -0,0 +1,84 @@
+package ru.mail.polis;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Descending iteration tests for {@link DAO} implementations.
+ */
+class DescendingTest extends TestBase {
+    private static void check(
+            @NotNull final Iterator<Record> actual,
+            @NotNull final NavigableMap<ByteBuffer, ByteBuffer> expected) {
+        for (final Map.Entry<ByteBuffer, ByteBuffer> entry : expected.entrySet()) {
+            final Record record = actual.next();
+            assertEquals(entry.getKey(), record.getKey());
+            assertEquals(entry.getValue(), record.getValue());
+        }
+        assertFalse(actual.hasNext());
+    }
+
+    @Test
+    void reversed(@TempDir File data) throws IOException {
+        final NavigableMap<ByteBuffer, ByteBuffer> map = new TreeMap<>();
+        try (DAO dao = DAOFactory.create(data)) {
+            for (int i = 0; i < 100; i++) {
+                final ByteBuffer key = randomKey();
+                final ByteBuffer value = randomValue();
+                dao.upsert(key, value);
+                map.put(key, value);
+            }
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            int i = 0;
+            for (final ByteBuffer key : map.keySet().toArray(new ByteBuffer[0])) {
+                if (i++ % 3 == 0) {
+                    dao.remove(key);
+                    map.remove(key);
+                } else if (i % 3 == 1) {
+                    final ByteBuffer value = randomValue();
+                    dao.upsert(key, value);
+                    map.put(key, value);
+                }
+            }
+
+            check(dao.descendingRange(ByteBuffer.allocate(0), null), map.descendingMap());
+
+            final ByteBuffer from = map.keySet().toArray(new ByteBuffer[0])[10];
+            final ByteBuffer to = map.keySet().toArray(new ByteBuffer[0])[40];
+            check(dao.descendingRange(from, to), map.subMap(from, true, to, false).descendingMap());
+        }
+    }
+
+    @Test
+    void deletedRange(@TempDir File data) throws IOException {
+        final NavigableMap<ByteBuffer, ByteBuffer> map = new TreeMap<>();
+        try (DAO dao = DAOFactory.create(data)) {
+            for (int i = 0; i < 100; i++) {
+                final ByteBuffer key = randomKey();
+                final ByteBuffer value = randomValue();
+                dao.upsert(key, value);
+                map.put(key, value);
+            }
+            final ByteBuffer from = map.keySet().toArray(new ByteBuffer[0])[20];
+            final ByteBuffer to = map.keySet().toArray(new ByteBuffer[0])[60];
+            dao.deleteRange(from, to);
+            map.subMap(from, true, to, false).clear();
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            check(dao.descendingRange(ByteBuffer.allocate(0), null), map.descendingMap());
+        }
+    }
+}
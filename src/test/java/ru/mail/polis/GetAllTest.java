@@ -0,0 +1,53 @@
+package ru.mail.polis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Multi-get tests for {@link DAO} implementations.
+ */
+class GetAllTest extends TestBase {
+    @Test
+    void getAll(@TempDir File data) throws IOException {
+        final Map<ByteBuffer, ByteBuffer> map = new HashMap<>();
+        final List<ByteBuffer> keys = new ArrayList<>();
+        try (DAO dao = DAOFactory.create(data)) {
+            for (int i = 0; i < 500; i++) {
+                final ByteBuffer key = randomKey();
+                final ByteBuffer value = randomValue();
+                dao.upsert(key, value);
+                map.put(key, value);
+                keys.add(key);
+            }
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            for (int i = 0; i < keys.size(); i += 3) {
+                dao.remove(keys.get(i));
+                map.remove(keys.get(i));
+            }
+            for (int i = 1; i < keys.size(); i += 3) {
+                final ByteBuffer value = randomValue();
+                dao.upsert(keys.get(i), value);
+                map.put(keys.get(i), value);
+            }
+            for (int i = 0; i < 100; i++) {
+                keys.add(randomKey());
+            }
+            keys.add(keys.get(1));
+
+            assertEquals(map, dao.getAll(keys));
+            assertTrue(dao.getAll(List.of()).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.mail.polis;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link Histogram}.
+ */
+class HistogramTest {
+    @Test
+    void empty() {
+        final Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= Histogram.SUB_BUCKETS; i++) {
+            histogram.record(i - 1);
+        }
+        assertEquals(15, histogram.getValueAtPercentile(50));
+        assertEquals(Histogram.SUB_BUCKETS - 1, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void percentiles() {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1_000_000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1_000_000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_000.5, histogram.getMean(), 1e-6);
+        for (final double percentile : new double[]{1, 50, 90, 99, 99.9}) {
+            final double expected = percentile * 10_000;
+            final long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(actual >= expected && actual <= expected * (1 + 1.0 / Histogram.SUB_BUCKETS) + 1,
+                    percentile + ": " + actual);
+        }
+    }
+
+    @Test
+    void buckets() {
+        for (long value = 0; value < 1_000_000; value = value * 3 / 2 + 1) {
+            final int index = Histogram.index(value);
+            assertTrue(Histogram.highestValue(index) >= value);
+            assertTrue(index == 0 || Histogram.highestValue(index - 1) < value);
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.highestValue(Histogram.index(Long.MAX_VALUE)));
+    }
+}
@@ -0,0 +1,78 @@
+package ru.mail.polis;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Prefix scan tests for {@link DAO} implementations.
+ */
+class PrefixTest extends TestBase {
+    @NotNull
+    private static ByteBuffer bytes(final int... bytes) {
+        final ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+        for (final int b : bytes) {
+            buffer.put((byte) b);
+        }
+        return buffer.flip();
+    }
+
+    @Test
+    void prefix(@TempDir File data) throws IOException {
+        final ByteBuffer value = randomValue();
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.upsert(bytes(1), value);
+            dao.upsert(bytes(1, 2), value);
+            dao.upsert(bytes(1, 2, 3), value);
+            dao.upsert(bytes(1, 3), value);
+            dao.upsert(bytes(2), value);
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.remove(bytes(1, 2));
+            final Iterator<Record> records = dao.prefix(bytes(1, 2));
+            assertEquals(bytes(1, 2, 3), records.next().getKey());
+            assertFalse(records.hasNext());
+
+            final Iterator<Record> all = dao.prefix(bytes(1));
+            assertEquals(bytes(1), all.next().getKey());
+            assertEquals(bytes(1, 2, 3), all.next().getKey());
+            assertEquals(bytes(1, 3), all.next().getKey());
+            assertFalse(all.hasNext());
+        }
+    }
+
+    @Test
+    void largestBytes(@TempDir File data) throws IOException {
+        final ByteBuffer value = randomValue();
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.upsert(bytes(0x7F), value);
+            dao.upsert(bytes(0x7F, 0x7F, 1), value);
+            dao.upsert(bytes(1, 0x7F), value);
+            dao.upsert(bytes(1, 0x7F, 0x7F), value);
+            dao.upsert(bytes(2), value);
+
+            final Iterator<Record> last = dao.prefix(bytes(0x7F, 0x7F));
+            assertEquals(bytes(0x7F, 0x7F, 1), last.next().getKey());
+            assertFalse(last.hasNext());
+
+            final Iterator<Record> middle = dao.prefix(bytes(1, 0x7F));
+            assertEquals(bytes(1, 0x7F), middle.next().getKey());
+            assertEquals(bytes(1, 0x7F, 0x7F), middle.next().getKey());
+            assertFalse(middle.hasNext());
+
+            final Iterator<Record> all = dao.prefix(ByteBuffer.allocate(0));
+            for (int i = 0; i < 5; i++) {
+                all.next();
+            }
+            assertFalse(all.hasNext());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.mail.polis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Stream tests for {@link DAO} implementations.
+ */
+class StreamTest extends TestBase {
+    @Test
+    void parallel(@TempDir File data) throws IOException {
+        final NavigableMap<ByteBuffer, ByteBuffer> map = new TreeMap<>();
+        try (DAO dao = DAOFactory.create(data)) {
+            for (int i = 0; i < 1000; i++) {
+                final ByteBuffer key = randomKey();
+                final ByteBuffer value = randomValue();
+                dao.upsert(key, value);
+                map.put(key, value);
+            }
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            int i = 0;
+            for (final ByteBuffer key : map.keySet().toArray(new ByteBuffer[0])) {
+                if (i++ % 4 == 0) {
+                    dao.remove(key);
+                    map.remove(key);
+                }
+            }
+
+            final List<ByteBuffer> keys = dao.stream(ByteBuffer.allocate(0), null)
+                    .parallel()
+                    .map(Record::getKey)
+                    .collect(Collectors.toList());
+            assertEquals(List.copyOf(map.keySet()), keys);
+
+            final ByteBuffer from = map.keySet().toArray(new ByteBuffer[0])[100];
+            final ByteBuffer to = map.keySet().toArray(new ByteBuffer[0])[500];
+            assertEquals(400, dao.stream(from, to).parallel().count());
+            assertEquals(0, dao.stream(to, from).count());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package ru.mail.polis;
+
+import com.google.common.collect.Iterators;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Time-to-live tests for {@link DAO} implementations.
+ */
+class TtlTest extends TestBase {
+    private static final Duration TTL = Duration.ofMillis(200);
+
+    private static void expire() {
+        try {
+            Thread.sleep(2 * TTL.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void expires(@TempDir File data) throws IOException {
+        final ByteBuffer key = randomKey();
+        final ByteBuffer value = randomValue();
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.upsert(key, value, TTL);
+            assertEquals(value, dao.get(key));
+            expire();
+            assertThrows(NoSuchElementException.class, () -> dao.get(key));
+            assertFalse(dao.iterator(ByteBuffer.allocate(0)).hasNext());
+        }
+    }
+
+    @Test
+    void expiredShadowsOlder(@TempDir File data) throws IOException {
+        final ByteBuffer key = randomKey();
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.upsert(key, randomValue());
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.upsert(key, randomValue(), TTL);
+        }
+        expire();
+        try (DAO dao = DAOFactory.create(data)) {
+            assertThrows(NoSuchElementException.class, () -> dao.get(key));
+        }
+    }
+
+    @Test
+    void nonPositiveTtl(@TempDir File data) throws IOException {
+        final ByteBuffer key = randomKey();
+        try (DAO dao = DAOFactory.create(data)) {
+            assertThrows(IllegalArgumentException.class, () -> dao.upsert(key, randomValue(), Duration.ZERO));
+            assertThrows(IllegalArgumentException.class, () -> dao.upsert(key, randomValue(), TTL.negated()));
+            assertThrows(NoSuchElementException.class, () -> dao.get(key));
+        }
+    }
+
+    @Test
+    void hugeTtlNeverExpires(@TempDir File data) throws IOException {
+        final ByteBuffer key = randomKey();
+        final ByteBuffer value = randomValue();
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.upsert(key, value, Duration.ofSeconds(Long.MAX_VALUE));
+            dao.upsert(randomKey(), value, Duration.ofMillis(Long.MAX_VALUE));
+        }
+        try (DAO dao = DAOFactory.create(data)) {
+            assertEquals(value, dao.get(key));
+            assertEquals(2, Iterators.size(dao.iterator(ByteBuffer.allocate(0))));
+        }
+    }
+
+    @Test
+    void compactionDropsExpired(@TempDir File data) throws IOException {
+        final int valueSize = 1024 * 1024;
+        final int keyCount = 10;
+        final ByteBuffer value = randomBuffer(valueSize);
+        final ByteBuffer alive = randomKey();
+
+        try (DAO dao = DAOFactory.create(data)) {
+            for (int i = 0; i < keyCount; i++) {
+                dao.upsert(randomKey(), value, TTL);
+            }
+            dao.upsert(alive, value);
+        }
+        expire();
+        try (DAO dao = DAOFactory.create(data)) {
+            dao.compact();
+            assertEquals(value, dao.get(alive));
+        }
+
+        // Only the permanent value is left
+        final long size = Files.directorySize(data);
+        assertTrue(size < 2 * valueSize);
+    }
+}
@@ -0,0 +1,857 @@
+package ru.mail.polis.suhova;
+
+import com.google.common.collect.Iterators;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mail.polis.Cursor;
+import ru.mail.polis.DAO;
+import ru.mail.polis.Record;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link TurboDAO} specific features.
+ */
+class TurboDAOTest {
+    private static final long FLUSH_THRESHOLD = 1024;
+
+    @NotNull
+    private static ByteBuffer key(final int i) {
+        return ByteBuffer.wrap(String.format("key%06d", i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @NotNull
+    private static ByteBuffer value(final int i) {
+        return ByteBuffer.wrap(("value" + i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @NotNull
+    private static ByteBuffer counter(final long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(0, value);
+    }
+
+    @NotNull
+    private static TurboDAO counters(@NotNull final File data) {
+        return new TurboDAO(data, new Config(FLUSH_THRESHOLD)
+                .setMergeOperator((older, newer) -> counter(older.getLong(0) + newer.getLong(0))));
+    }
+
+    private static int tableCount(@NotNull final File data) {
+        final File[] tables = data.listFiles((dir, name) -> name.endsWith("sst.dat"));
+        assert tables != null;
+        return tables.length;
+    }
+
+    @Test
+    void compactionSplitsOutput(@TempDir final File data) throws IOException {
+        final int count = 1000;
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD, 4 * FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+            dao.compact();
+        }
+
+        assertTrue(tableCount(data) > 1);
+
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD, 4 * FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+        }
+    }
+
+    @Test
+    void compactionFilter(@TempDir final File data) throws IOException {
+        final int count = 100;
+        final ByteBuffer rewritten = ByteBuffer.wrap("rewritten".getBytes(StandardCharsets.UTF_8));
+        try (TurboDAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+            dao.setCompactionFilter((key, value) -> {
+                final int i = Integer.parseInt(StandardCharsets.UTF_8.decode(key).toString().substring(3));
+                if (i % 2 == 0) {
+                    return null;
+                }
+                return i % 3 == 0 ? rewritten : value;
+            });
+            dao.compact();
+        }
+
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                final ByteBuffer key = key(i);
+                if (i % 2 == 0) {
+                    assertThrows(NoSuchElementException.class, () -> dao.get(key));
+                } else if (i % 3 == 0) {
+                    assertEquals(rewritten, dao.get(key));
+                } else {
+                    assertEquals(value(i), dao.get(key));
+                }
+            }
+        }
+    }
+
+    @Test
+    void mergeCounters(@TempDir final File data) throws IOException {
+        final int count = 50;
+        final int rounds = 20;
+        try (TurboDAO dao = counters(data)) {
+            dao.upsert(key(0), counter(100));
+            dao.upsert(key(1), counter(100));
+            for (int round = 0; round < rounds; round++) {
+                for (int i = 0; i < count; i++) {
+                    dao.merge(key(i), counter(1));
+                }
+                if (round == rounds / 2) {
+                    dao.remove(key(1));
+                }
+            }
+            assertEquals(counter(100 + rounds), dao.get(key(0)));
+            assertEquals(counter(rounds / 2 - 1), dao.get(key(1)));
+            assertEquals(counter(rounds), dao.get(key(2)));
+        }
+
+        try (TurboDAO dao = counters(data)) {
+            dao.compact();
+            for (int i = 2; i < count; i++) {
+                assertEquals(counter(rounds), dao.get(key(i)));
+            }
+            dao.merge(key(0), counter(1));
+            assertEquals(counter(100 + rounds + 1), dao.get(key(0)));
+        }
+        assertThrows(IllegalStateException.class, () -> new TurboDAO(data, FLUSH_THRESHOLD));
+    }
+
+    @Test
+    void rangeOverSplitTables(@TempDir final File data) throws IOException {
+        final int count = 1000;
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD, 4 * FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+            dao.compact();
+            for (int i = 0; i < count; i += 2) {
+                dao.remove(key(i));
+            }
+        }
+
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD, 4 * FLUSH_THRESHOLD)) {
+            final Iterator<Record> range = dao.range(key(100), key(200));
+            for (int i = 101; i < 200; i += 2) {
+                final Record record = range.next();
+                assertEquals(key(i), record.getKey());
+                assertEquals(value(i), record.getValue());
+            }
+            assertFalse(range.hasNext());
+            assertFalse(dao.range(key(count), null).hasNext());
+        }
+    }
+
+    @Test
+    void prefixFilter(@TempDir final File data) throws IOException {
+        final Config config = new Config(FLUSH_THRESHOLD).setPrefixLength(3);
+        final ByteBuffer value = value(0);
+        try (DAO dao = new TurboDAO(data, config)) {
+            for (int i = 0; i < 20; i++) {
+                dao.upsert(key(i), value(i));
+            }
+        }
+        try (DAO dao = new TurboDAO(data, config)) {
+            for (int i = 0; i < 100; i++) {
+                dao.upsert(ByteBuffer.wrap(String.format("a%02d", i).getBytes(StandardCharsets.UTF_8)), value);
+            }
+            dao.deleteRange(key(0), key(10));
+        }
+
+        assertTrue(tableCount(data) > 1);
+
+        try (DAO dao = new TurboDAO(data, config)) {
+            final Iterator<Record> records = dao.prefix(ByteBuffer.wrap("key".getBytes(StandardCharsets.UTF_8)));
+            for (int i = 10; i < 20; i++) {
+                final Record record = records.next();
+                assertEquals(key(i), record.getKey());
+                assertEquals(value(i), record.getValue());
+            }
+            assertFalse(records.hasNext());
+            assertFalse(dao.prefix(ByteBuffer.wrap("a1x".getBytes(StandardCharsets.UTF_8))).hasNext());
+            assertEquals(10, Iterators.size(dao.prefix(ByteBuffer.wrap("a1".getBytes(StandardCharsets.UTF_8)))));
+        }
+    }
+
+    @Test
+    void streamSplitsOnTables(@TempDir final File data) throws IOException {
+        final int count = 1000;
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD, 4 * FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+            dao.compact();
+        }
+
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            final Spliterator<Record> upper = dao.stream(key(100), key(900)).spliterator();
+            final Spliterator<Record> lower = upper.trySplit();
+            assertNotNull(lower);
+            final List<ByteBuffer> keys = new ArrayList<>();
+            lower.forEachRemaining(record -> keys.add(record.getKey()));
+            final int split = keys.size();
+            assertTrue(split > 0 && split < 800);
+            upper.forEachRemaining(record -> keys.add(record.getKey()));
+            for (int i = 0; i < 800; i++) {
+                assertEquals(key(100 + i), keys.get(i));
+            }
+            assertEquals(800, keys.size());
+
+            final long sum = dao.stream(ByteBuffer.allocate(0), null)
+                    .parallel()
+                    .mapToLong(record -> record.getValue().remaining())
+                    .sum();
+            long expected = 0;
+            for (int i = 0; i < count; i++) {
+                expected += value(i).remaining();
+            }
+            assertEquals(expected, sum);
+        }
+    }
+
+    @Test
+    void bulkLoadSpillsRuns(@TempDir final File data) throws IOException {
+        final int count = 1000;
+        final List<Record> records = new ArrayList<>();
+        for (int i = count - 1; i >= 0; i--) {
+            records.add(Record.of(key(i), value(0)));
+        }
+        for (int i = 0; i < count; i++) {
+            records.add(Record.of(key(i), value(i)));
+        }
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD, 4 * FLUSH_THRESHOLD)) {
+            dao.upsert(key(count), value(count));
+            dao.bulkLoad(records.iterator());
+            assertEquals(value(count), dao.get(key(count)));
+        }
+
+        final File[] files = data.listFiles((dir, name) -> !name.endsWith("sst.dat") && !name.equals("MANIFEST"));
+        assertNotNull(files);
+        assertEquals(0, files.length);
+        assertTrue(tableCount(data) > 2);
+        final File stale = new File(data, "0run.tmp");
+        assertTrue(stale.createNewFile());
+
+        try (TurboDAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            assertTrue(stale.exists());
+            dao.sweep();
+            assertFalse(stale.exists());
+            final Iterator<Record> range = dao.iterator(key(0));
+            for (int i = 0; i <= count; i++) {
+                final Record record = range.next();
+                assertEquals(key(i), record.getKey());
+                assertEquals(value(i), record.getValue());
+            }
+            assertFalse(range.hasNext());
+        }
+    }
+
+    @Test
+    void scanReadsBlocks(@TempDir final File data) throws IOException {
+        final int count = 1000;
+        final int valueSize = SSTable.BLOCK_SIZE / 100;
+        try (DAO dao = new TurboDAO(data, count * valueSize)) {
+            for (int i = 0; i < count; i++) {
+                final ByteBuffer value = ByteBuffer.allocate(valueSize).putInt(0, i);
+                dao.upsert(key(i), value);
+                if (i % 3 == 0) {
+                    dao.remove(key(i));
+                }
+            }
+        }
+
+        assertEquals(1, tableCount(data));
+
+        try (DAO dao = new TurboDAO(data, count * valueSize)) {
+            final Iterator<Record> records = dao.iterator(key(10));
+            for (int i = 10; i < count; i++) {
+                if (i % 3 == 0) {
+                    continue;
+                }
+                final Record record = records.next();
+                assertEquals(key(i), record.getKey());
+                assertEquals(valueSize, record.getValue().remaining());
+                assertEquals(i, record.getValue().getInt(0));
+            }
+            assertFalse(records.hasNext());
+            assertEquals(count - 1 - count / 3, Iterators.size(dao.range(key(1), key(count))));
+        }
+    }
+
+    @Test
+    void prefetchStopsOnRetire(@TempDir final File data) throws Exception {
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            for (int i = 0; i < 100; i++) {
+                dao.upsert(key(i), value(i));
+            }
+        }
+        final File file = data.listFiles((dir, name) -> name.endsWith("sst.dat"))[0];
+        try (Prefetcher prefetcher = new Prefetcher(1)) {
+            final SSTable table = new SSTable(file, new FileCache(1), ChecksumMode.FIRST_LOAD, prefetcher);
+            final Future<List<Cell>> block = table.prefetch(0, 1);
+            assertNotNull(block);
+            assertEquals(1, block.get().size());
+            table.retire();
+            assertNull(table.prefetch(0, 1));
+        }
+    }
+
+    @Test
+    void cursorOverTables(@TempDir final File data) throws IOException {
+        final int count = 1000;
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD, 4 * FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+            dao.compact();
+            dao.deleteRange(key(300), key(600));
+            for (int i = 0; i < count; i += 10) {
+                dao.upsert(key(i), value(-i));
+            }
+
+            try (Cursor cursor = dao.cursor()) {
+                for (int i = 0; i < count; i += 7) {
+                    cursor.seek(key(i));
+                    final int expected = i >= 300 && i < 600 ? (i + 9) / 10 * 10 : i;
+                    final Record record = cursor.next();
+                    assertEquals(key(expected), record.getKey());
+                    assertEquals(expected % 10 == 0 ? value(-expected) : value(expected), record.getValue());
+                }
+                cursor.seek(key(299));
+                assertEquals(key(299), cursor.next().getKey());
+                assertEquals(key(300), cursor.next().getKey());
+                assertEquals(key(310), cursor.next().getKey());
+                cursor.seek(key(count));
+                assertFalse(cursor.hasNext());
+                cursor.seek(key(5));
+                assertEquals(key(5), cursor.next().getKey());
+                cursor.seek(key(455));
+                assertEquals(key(460), cursor.next().getKey());
+                cursor.seek(key(599));
+                assertEquals(key(600), cursor.next().getKey());
+            }
+        }
+    }
+
+    @Test
+    void tombstoneRunsBecomeRanges(@TempDir final File data) throws IOException {
+        final int count = 1000;
+        try (DAO dao = new TurboDAO(data, count * FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i += 2) {
+                dao.upsert(key(i), value(i));
+            }
+            dao.upsert(key(101), value(101));
+        }
+        try (DAO dao = new TurboDAO(data, count * FLUSH_THRESHOLD)) {
+            for (int i = 0; i < 500; i += 2) {
+                dao.remove(key(i));
+            }
+            dao.upsert(key(551), value(551));
+            for (int i = 600; i < 800; i += 2) {
+                dao.remove(key(i));
+            }
+        }
+
+        assertEquals(2, tableCount(data));
+        final Prefetcher prefetcher = new Prefetcher(1);
+        final SSTable flushed = new SSTable(
+                new File(data, "1sst.dat"), new FileCache(1), ChecksumMode.ALWAYS, prefetcher);
+        try {
+            assertEquals(1, flushed.getRangeTombstones().size());
+            final RangeTombstone tombstone = flushed.getRangeTombstones().iterator().next();
+            assertEquals(key(600), tombstone.getFrom());
+            assertFalse(tombstone.contains(key(801)));
+        } finally {
+            flushed.close();
+            prefetcher.close();
+        }
+
+        try (DAO dao = new TurboDAO(data, count * FLUSH_THRESHOLD)) {
+            final Iterator<Record> records = dao.iterator(ByteBuffer.allocate(0));
+            assertEquals(key(101), records.next().getKey());
+            for (int i = 500; i < count; i += 2) {
+                if (i == 552) {
+                    assertEquals(key(551), records.next().getKey());
+                }
+                if (i >= 600 && i < 800) {
+                    continue;
+                }
+                assertEquals(key(i), records.next().getKey());
+            }
+            assertFalse(records.hasNext());
+        }
+    }
+
+    @Test
+    void getAllOverFilteredTables(@TempDir final File data) throws IOException {
+        final int count = 1000;
+        final Config config = new Config(FLUSH_THRESHOLD).setPrefixLength(6);
+        final List<ByteBuffer> keys = new ArrayList<>();
+        try (DAO dao = new TurboDAO(data, config)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+            dao.deleteRange(key(100), key(200));
+            for (int i = 0; i < count; i += 3) {
+                keys.add(key(i));
+                keys.add(key(count + i));
+            }
+        }
+
+        try (DAO dao = new TurboDAO(data, config)) {
+            final Map<ByteBuffer, ByteBuffer> values = dao.getAll(keys);
+            for (int i = 0; i < count; i += 3) {
+                if (i >= 100 && i < 200) {
+                    assertFalse(values.containsKey(key(i)));
+                } else {
+                    assertEquals(value(i), values.get(key(i)));
+                }
+            }
+            assertEquals(count / 3 + 1 - 33, values.size());
+        }
+    }
+
+    @Test
+    void manifestReplay(@TempDir final File data) throws IOException {
+        final int count = 100;
+        for (int round = 0; round < 3; round++) {
+            try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+                for (int i = round; i < count; i += 3) {
+                    dao.upsert(key(i), value(i));
+                }
+            }
+        }
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            dao.compact();
+        }
+        final File manifest = new File(data, "MANIFEST");
+        final File compacted = data.listFiles((dir, name) -> name.endsWith("sst.dat"))[0];
+        final File stale = new File(data, "0sst.dat");
+        Files.copy(compacted.toPath(), stale.toPath());
+        Files.write(manifest.toPath(), new byte[]{0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+
+        try (TurboDAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            assertTrue(stale.exists());
+            dao.sweep();
+            assertFalse(stale.exists());
+            for (int i = 0; i < count; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+            dao.upsert(key(count), value(count));
+        }
+
+        assertTrue(manifest.delete());
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            for (int i = 0; i <= count; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+        }
+        assertTrue(manifest.exists());
+    }
+
+    @Test
+    void unrecordedTablesDeleted(@TempDir final File data) throws IOException {
+        final int count = 100;
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+        }
+        final int tables = tableCount(data);
+        final File placed = data.listFiles((dir, name) -> name.endsWith("sst.dat"))[0];
+        final File orphan = new File(data, tables + "sst.dat");
+        Files.copy(placed.toPath(), orphan.toPath());
+
+        try (TurboDAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            assertTrue(orphan.exists());
+            dao.sweep();
+            assertFalse(orphan.exists());
+            dao.upsert(key(count), value(count));
+        }
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            for (int i = 0; i <= count; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+        }
+    }
+
+    @Test
+    void boundedOpenFiles(@TempDir final File data) throws IOException {
+        final int count = 1000;
+        final Config config = new Config(FLUSH_THRESHOLD).setMaxOpenFiles(2);
+        try (DAO dao = new TurboDAO(data, config)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+        }
+
+        assertTrue(tableCount(data) > 10);
+
+        try (DAO dao = new TurboDAO(data, config)) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+            assertEquals(count, Iterators.size(dao.iterator(ByteBuffer.allocate(0))));
+        }
+
+        final FileCache files = new FileCache(2);
+        final File[] tables = data.listFiles((dir, name) -> name.endsWith("sst.dat"));
+        assertNotNull(tables);
+        try (FileCache.Handle held = files.acquire(tables[0])) {
+            for (int i = 1; i < 4; i++) {
+                files.acquire(tables[i]).close();
+            }
+            assertEquals(2, files.size());
+            assertTrue(held.channel().isOpen());
+        }
+    }
+
+    @Test
+    void startupVerification(@TempDir final File data) throws IOException {
+        final int count = 1000;
+        final Config config = new Config(FLUSH_THRESHOLD).setStartupThreads(4).setPreload(true).setVerify(true);
+        try (DAO dao = new TurboDAO(data, config)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+        }
+
+        try (TurboDAO dao = new TurboDAO(data, config)) {
+            dao.getVerification().join();
+            for (int i = 0; i < count; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+        }
+
+        final File table = new File(data, "0sst.dat");
+        try (FileChannel channel = FileChannel.open(table.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("zzz".getBytes(StandardCharsets.UTF_8)), Integer.BYTES);
+        }
+        try (TurboDAO dao = new TurboDAO(data, config)) {
+            assertThrows(CompletionException.class, () -> dao.getVerification().join());
+        }
+
+        try (FileChannel channel = FileChannel.open(table.toPath(), StandardOpenOption.WRITE)) {
+            final long countOffset = table.length() - Long.BYTES - 6 * Integer.BYTES;
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, -1), countOffset);
+        }
+        assertThrows(UncheckedIOException.class, () -> new TurboDAO(data, config));
+        try (TurboDAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            assertEquals(value(count - 1), dao.get(key(count - 1)));
+        }
+    }
+
+    @Test
+    void formatVersion(@TempDir final File data) throws IOException {
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            dao.upsert(key(0), value(0));
+        }
+        assertTrue(new File(data, Manifest.NAME).delete());
+        final File table = new File(data, "0sst.dat");
+        try (FileChannel channel = FileChannel.open(table.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 42), table.length() - 3 * Integer.BYTES);
+        }
+        final UncheckedIOException future = assertThrows(
+                UncheckedIOException.class, () -> new TurboDAO(data, FLUSH_THRESHOLD));
+        assertTrue(future.getMessage().contains("Unsupported format version 42"));
+
+        try (FileChannel channel = FileChannel.open(table.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(table.length() - Integer.BYTES);
+        }
+        final UncheckedIOException old = assertThrows(
+                UncheckedIOException.class, () -> new TurboDAO(data, FLUSH_THRESHOLD));
+        assertTrue(old.getMessage().contains("written before format version 4"));
+    }
+
+    @Test
+    void blockChecksums(@TempDir final File data) throws Exception {
+        final int count = 1000;
+        try (DAO dao = new TurboDAO(data, FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+        }
+
+        final File table = new File(data, "0sst.dat");
+        try (FileChannel channel = FileChannel.open(table.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("zzz".getBytes(StandardCharsets.UTF_8)), Integer.BYTES);
+        }
+        final Config always = new Config(FLUSH_THRESHOLD).setChecksumMode(ChecksumMode.ALWAYS);
+        try (DAO dao = new TurboDAO(data, always)) {
+            assertThrows(UncheckedIOException.class, () -> dao.get(key(0)));
+            assertThrows(UncheckedIOException.class, () -> Iterators.size(dao.iterator(key(0))));
+            assertEquals(value(count - 1), dao.get(key(count - 1)));
+        }
+        try (DAO dao = new TurboDAO(data, new Config(FLUSH_THRESHOLD).setChecksumMode(ChecksumMode.OFF))) {
+            assertEquals(value(count - 1), dao.get(key(count - 1)));
+        }
+
+        try (TurboDAO dao = new TurboDAO(data, new Config(FLUSH_THRESHOLD).setScrubInterval(10))) {
+            final long deadline = System.currentTimeMillis() + 10_000;
+            while (dao.getCorruptedTables().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, dao.getCorruptedTables().size());
+            assertTrue(dao.getCorruptedTables().contains(table));
+        }
+    }
+
+    @Test
+    void multipleDirectories(@TempDir final File data) throws IOException {
+        final List<File> dirs = List.of(new File(data, "a"), new File(data, "b"), new File(data, "c"));
+        dirs.forEach(File::mkdir);
+        final int count = 3000;
+        final Config config = new Config(FLUSH_THRESHOLD);
+        try (DAO dao = new TurboDAO(dirs, config)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+        }
+        for (final File dir : dirs) {
+            assertTrue(tableCount(dir) > 0);
+        }
+        assertTrue(new File(dirs.get(0), Manifest.NAME).exists());
+
+        try (DAO dao = new TurboDAO(dirs, config)) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+            dao.compact();
+            assertEquals(count, Iterators.size(dao.iterator(key(0))));
+        }
+        try (DAO dao = new TurboDAO(dirs, config)) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+        }
+
+        final File table = dirs.get(1).listFiles((dir, name) -> name.endsWith("sst.dat"))[0];
+        final File moved = new File(dirs.get(2), table.getName());
+        Files.copy(table.toPath(), moved.toPath());
+        try (TurboDAO dao = new TurboDAO(dirs, config)) {
+            dao.sweep();
+            assertTrue(table.exists());
+            assertFalse(moved.exists());
+        }
+
+        Files.move(table.toPath(), moved.toPath());
+        try (DAO dao = new TurboDAO(dirs, config)) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+        }
+        Files.copy(moved.toPath(), new File(dirs.get(0), table.getName()).toPath());
+        assertThrows(UncheckedIOException.class, () -> new TurboDAO(dirs, config));
+    }
+
+    @Test
+    void coldTier(@TempDir final File data) throws IOException {
+        final File hot = new File(data, "hot");
+        final File cold = new File(data, "cold");
+        assertTrue(hot.mkdir() && cold.mkdir());
+        final int count = 3000;
+        final Config config = new Config(FLUSH_THRESHOLD).setColdDir(cold).setHotSize(0);
+        try (DAO dao = new TurboDAO(hot, config)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+            dao.compact();
+            assertEquals(0, tableCount(hot));
+            for (int i = 0; i < count; i += 2) {
+                dao.upsert(key(i), value(i + 1));
+            }
+        }
+        final File[] compressed = cold.listFiles((dir, name) -> name.endsWith(CompressedFile.EXTENSION));
+        assertNotNull(compressed);
+        assertTrue(compressed.length > 0);
+        assertTrue(tableCount(hot) > 0);
+        final File orphan = new File(cold, "1000sst.dat.z");
+        final File temporary = new File(cold, "1001sst.tmp.z");
+        Files.copy(compressed[0].toPath(), orphan.toPath());
+        Files.copy(compressed[0].toPath(), temporary.toPath());
+
+        try (TurboDAO dao = new TurboDAO(hot, config)) {
+            assertTrue(orphan.exists() && temporary.exists());
+            dao.sweep();
+            assertFalse(orphan.exists());
+            assertFalse(temporary.exists());
+            for (int i = 0; i < count; i++) {
+                assertEquals(value(i % 2 == 0 ? i + 1 : i), dao.get(key(i)));
+            }
+            assertEquals(count, Iterators.size(dao.iterator(key(0))));
+        }
+    }
+
+    @Test
+    void hotTablesStayHot(@TempDir final File data) throws IOException {
+        final File hot = new File(data, "hot");
+        final File cold = new File(data, "cold");
+        assertTrue(hot.mkdir() && cold.mkdir());
+        final int count = 3000;
+        final long hotSize = 8 * FLUSH_THRESHOLD;
+        final Config config = new Config(FLUSH_THRESHOLD).setColdDir(cold).setHotSize(hotSize);
+        try (DAO dao = new TurboDAO(hot, config)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+            for (int i = 0; i < count; i += 3) {
+                dao.remove(key(i));
+            }
+            dao.compact();
+            final File[] tables = hot.listFiles((dir, name) -> name.endsWith("sst.dat"));
+            assertNotNull(tables);
+            assertTrue(tables.length > 0);
+            assertTrue(Arrays.stream(tables).mapToLong(File::length).sum() <= hotSize);
+            dao.compact();
+        }
+        assertTrue(cold.list().length > 0);
+
+        try (DAO dao = new TurboDAO(hot, config)) {
+            for (int i = 0; i < count; i++) {
+                final ByteBuffer key = key(i);
+                if (i % 3 == 0) {
+                    assertThrows(NoSuchElementException.class, () -> dao.get(key));
+                } else {
+                    assertEquals(value(i), dao.get(key));
+                }
+            }
+        }
+    }
+
+    @Test
+    void coldCompactionMergesOverlapOnly(@TempDir final File data) throws IOException {
+        final File hot = new File(data, "hot");
+        final File cold = new File(data, "cold");
+        assertTrue(hot.mkdir() && cold.mkdir());
+        final int count = 3000;
+        final Config config = new Config(FLUSH_THRESHOLD).setColdDir(cold).setHotSize(0);
+        try (DAO dao = new TurboDAO(hot, config)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+            dao.compact();
+            final File[] before = cold.listFiles();
+            assertNotNull(before);
+            assertTrue(before.length > 2);
+            Arrays.sort(before, Comparator.comparing(file -> TurboDAO.generation(file.getName())));
+            final File first = before[0];
+            final File last = before[before.length - 1];
+
+            dao.upsert(key(count - 1), value(0));
+            dao.remove(key(count - 2));
+            dao.compact();
+            assertEquals(0, tableCount(hot));
+            assertTrue(first.exists());
+            assertFalse(last.exists());
+            for (int i = 0; i < count - 2; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+            assertThrows(NoSuchElementException.class, () -> dao.get(key(count - 2)));
+            assertEquals(value(0), dao.get(key(count - 1)));
+        }
+    }
+
+    @Test
+    void checkpoint(@TempDir final File data) throws IOException {
+        final File live = new File(data, "live");
+        final File backup = new File(data, "backup");
+        assertTrue(live.mkdir());
+        final int count = 2000;
+        try (TurboDAO dao = new TurboDAO(live, FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+            dao.checkpoint(backup);
+            assertThrows(IOException.class, () -> dao.checkpoint(backup));
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i + 1));
+            }
+            dao.compact();
+        }
+
+        try (DAO dao = new TurboDAO(backup, FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+        }
+        try (DAO dao = new TurboDAO(live, FLUSH_THRESHOLD)) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(value(i + 1), dao.get(key(i)));
+            }
+        }
+    }
+
+    @Test
+    void metrics(@TempDir final File data) throws Exception {
+        final int count = 1000;
+        final ObjectName name;
+        try (TurboDAO dao = new TurboDAO(data, new Config(FLUSH_THRESHOLD).setJmx(true))) {
+            for (int i = 0; i < count; i++) {
+                dao.upsert(key(i), value(i));
+            }
+            for (int i = 0; i < count; i++) {
+                assertEquals(value(i), dao.get(key(i)));
+            }
+            assertThrows(NoSuchElementException.class, () -> dao.get(key(count)));
+            assertEquals(2, dao.getAll(List.of(key(0), key(1), key(count))).size());
+            dao.iterator(key(0));
+            dao.range(key(0), key(count));
+            dao.cursor();
+            dao.compact();
+
+            final Map<String, Number> snapshot = dao.getMetrics().snapshot();
+            assertEquals(count + 1L, snapshot.get("get.latency.count"));
+            assertTrue(snapshot.get("flush.latency.count").longValue() > 1);
+            assertTrue(snapshot.get("flush.bytes").longValue() > 0);
+            assertEquals(1L, snapshot.get("compact.latency.count"));
+            assertEquals(1L, snapshot.get("get.all.latency.count"));
+            assertEquals(3L, snapshot.get("scan.setup.count"));
+            assertTrue(snapshot.get("compact.bytes.read").longValue() >= snapshot.get("flush.bytes").longValue());
+            assertEquals((long) tableCount(data), snapshot.get("sstables.count"));
+            assertEquals(0L, snapshot.get("memtable.entries"));
+            assertTrue(snapshot.get("read.tables.max").longValue() > 1);
+
+            name = dao.getMetrics().getObjectName();
+            assertNotNull(name);
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals((long) tableCount(data), server.getAttribute(name, "sstables.count"));
+            assertEquals(count + 1L, server.getAttribute(name, "get.latency.count"));
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}